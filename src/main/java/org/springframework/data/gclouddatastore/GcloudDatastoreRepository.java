@@ -17,10 +17,16 @@
 package org.springframework.data.gclouddatastore;
 
 import java.io.Serializable;
+import java.util.stream.Stream;
 
 import com.google.cloud.datastore.Entity;
 import com.google.cloud.datastore.Query;
 
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.gclouddatastore.repository.BulkWriteOptions;
+import org.springframework.data.gclouddatastore.repository.BulkWriteResult;
+import org.springframework.data.gclouddatastore.repository.CursorPageable;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.data.repository.PagingAndSortingRepository;
 
@@ -28,4 +34,31 @@ public interface GcloudDatastoreRepository<T, ID extends Serializable>
 		extends PagingAndSortingRepository<T, ID> {
 
 	Iterable<T> query(Query<Entity> query);
+
+	/**
+	 * Returns a slice of all entities, starting from the query cursor of the pageable if
+	 * it is a {@link CursorPageable} with one. Unlike {@link #findAll(Pageable)}, no total
+	 * is computed, and the pageable of the slice continues from a cursor.
+	 */
+	Slice<T> findSlice(Pageable pageable);
+
+	/**
+	 * Saves entities of any number in parallel batches, see {@link BulkWriteOptions}.
+	 * Batches that fail are reported in the result rather than aborting the write, as
+	 * are entities exceeding the Datastore size limit, without failing their batch.
+	 */
+	BulkWriteResult saveAllInBulk(Iterable<? extends T> entities, BulkWriteOptions options);
+
+	/**
+	 * Saves the entities of a stream, which is closed afterwards, like
+	 * {@link #saveAllInBulk(Iterable, BulkWriteOptions)}.
+	 */
+	BulkWriteResult saveAllInBulk(Stream<? extends T> entities, BulkWriteOptions options);
+
+	/**
+	 * Deletes all entities of the kind, under the current
+	 * {@link org.springframework.data.gclouddatastore.repository.Context} ancestors, in
+	 * parallel batches. Keys are read page by page with query cursors.
+	 */
+	BulkWriteResult deleteAllInBulk(BulkWriteOptions options);
 }
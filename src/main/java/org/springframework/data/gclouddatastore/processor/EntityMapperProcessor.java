@@ -0,0 +1,469 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.data.gclouddatastore.processor;
+
+import java.beans.Introspector;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+
+import org.springframework.data.gclouddatastore.repository.EntityMappers;
+
+/**
+ * Generates an {@link org.springframework.data.gclouddatastore.repository.EntityMapper}
+ * for every class with an {@link org.springframework.data.annotation.Id} field. Simple
+ * properties are mapped by straight-line code calling the getters and setters, all
+ * other properties, including those with mapping annotations of this module, are
+ * delegated to {@link EntityMappers}. Classes the processor cannot map safely, e.g.
+ * without a no-arg constructor, are skipped and keep being mapped by reflection.
+ * <p>
+ * The processor is not registered as a service, so it has to be enabled explicitly with
+ * {@code -processor}.
+ */
+@SupportedAnnotationTypes("org.springframework.data.annotation.Id")
+public class EntityMapperProcessor extends AbstractProcessor {
+
+	private static final String MAPPING_PACKAGE = "org.springframework.data.gclouddatastore";
+
+	private final Set<String> processed = new HashSet<>();
+
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+		for (TypeElement annotation : annotations) {
+			for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+				Element type = element.getEnclosingElement();
+				if (type instanceof TypeElement
+						&& this.processed.add(((TypeElement) type).getQualifiedName().toString())) {
+					process((TypeElement) type);
+				}
+			}
+		}
+		return false;
+	}
+
+	private void process(TypeElement type) {
+		String reason = checkMappable(type);
+		Map<String, Property> properties = null;
+		if (reason == null) {
+			try {
+				properties = collectProperties(type);
+			}
+			catch (UnmappableException e) {
+				reason = e.getMessage();
+			}
+		}
+		if (reason != null) {
+			this.processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE,
+					"Not generating a mapper, " + reason, type);
+			return;
+		}
+
+		String binaryName = this.processingEnv.getElementUtils().getBinaryName(type).toString();
+		String mapperName = EntityMappers.getMapperClassName(binaryName);
+		try {
+			JavaFileObject file = this.processingEnv.getFiler().createSourceFile(mapperName, type);
+			try (PrintWriter writer = new PrintWriter(file.openWriter())) {
+				write(writer, type, mapperName, properties.values());
+			}
+		}
+		catch (IOException e) {
+			this.processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+					"Cannot write " + mapperName + ": " + e.getMessage(), type);
+		}
+	}
+
+	private String checkMappable(TypeElement type) {
+		if (type.getKind() != ElementKind.CLASS) {
+			return "not a class";
+		}
+		if (type.getModifiers().contains(Modifier.ABSTRACT)) {
+			return "class is abstract";
+		}
+		for (Element element = type; element instanceof TypeElement; element = element.getEnclosingElement()) {
+			if (element.getModifiers().contains(Modifier.PRIVATE)) {
+				return "class is private";
+			}
+			if (((TypeElement) element).getNestingKind() == NestingKind.MEMBER
+					&& !element.getModifiers().contains(Modifier.STATIC)) {
+				return "class is an inner class";
+			}
+		}
+		if (!type.getTypeParameters().isEmpty()) {
+			return "class is generic";
+		}
+		if (hasInheritedMappingAnnotation(type)) {
+			return "class or a supertype has mapping annotations";
+		}
+		if (!hasNoArgConstructor(type)) {
+			return "class has no no-arg constructor";
+		}
+		return null;
+	}
+
+	private boolean hasNoArgConstructor(TypeElement type) {
+		List<ExecutableElement> constructors = ElementFilter.constructorsIn(type.getEnclosedElements());
+		for (ExecutableElement constructor : constructors) {
+			if (constructor.getParameters().isEmpty()) {
+				return !constructor.getModifiers().contains(Modifier.PRIVATE);
+			}
+		}
+		if (hasAnnotation(type, "lombok.NoArgsConstructor")) {
+			return true;
+		}
+		return constructors.isEmpty() && !hasAnnotation(type, "lombok.AllArgsConstructor")
+				&& !hasAnnotation(type, "lombok.RequiredArgsConstructor")
+				&& !hasAnnotation(type, "lombok.Value");
+	}
+
+	private Map<String, Property> collectProperties(TypeElement type) {
+		String packageName = this.processingEnv.getElementUtils().getPackageOf(type)
+				.getQualifiedName().toString();
+		Map<String, Property> properties = new LinkedHashMap<>();
+		for (TypeElement current = type; current != null; current = getSuperclass(current)) {
+			boolean samePackage = packageName.equals(this.processingEnv.getElementUtils()
+					.getPackageOf(current).getQualifiedName().toString());
+
+			for (ExecutableElement method : ElementFilter.methodsIn(current.getEnclosedElements())) {
+				if (!method.getModifiers().contains(Modifier.PUBLIC)
+						|| method.getModifiers().contains(Modifier.STATIC)) {
+					continue;
+				}
+				String methodName = method.getSimpleName().toString();
+				if (method.getParameters().isEmpty() && method.getReturnType().getKind() != TypeKind.VOID) {
+					String name = getPropertyName(methodName, method.getReturnType());
+					if (name != null) {
+						Property property = getProperty(properties, name, method.getReturnType());
+						property.delegated |= hasMappingAnnotation(method);
+						if (property.getter == null) {
+							property.getter = methodName;
+						}
+					}
+				}
+				else if (method.getParameters().size() == 1 && methodName.startsWith("set")
+						&& methodName.length() > 3) {
+					TypeMirror parameterType = method.getParameters().get(0).asType();
+					Property property = getProperty(properties,
+							Introspector.decapitalize(methodName.substring(3)), parameterType);
+					property.delegated |= hasMappingAnnotation(method);
+					if (property.setter == null
+							&& this.processingEnv.getTypeUtils().isSameType(parameterType, property.type)) {
+						property.setter = methodName;
+					}
+				}
+			}
+
+			for (VariableElement field : ElementFilter.fieldsIn(current.getEnclosedElements())) {
+				if (field.getModifiers().contains(Modifier.STATIC)
+						|| field.getModifiers().contains(Modifier.TRANSIENT)) {
+					continue;
+				}
+				String name = field.getSimpleName().toString();
+				String capitalized = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+				if (!name.equals(Introspector.decapitalize(capitalized))
+						|| (field.asType().getKind() == TypeKind.BOOLEAN && name.startsWith("is"))) {
+					throw new UnmappableException("field " + field + " has no conventional accessor names");
+				}
+				if (!samePackage && !current.getModifiers().contains(Modifier.PUBLIC)) {
+					continue;
+				}
+
+				Property property = getProperty(properties, name, field.asType());
+				property.delegated |= hasMappingAnnotation(field);
+				if (property.getter == null && (hasAnnotation(field, "lombok.Getter")
+						|| hasAnnotation(current, "lombok.Getter") || hasAnnotation(current, "lombok.Data")
+						|| hasAnnotation(current, "lombok.Value"))) {
+					property.getter = (field.asType().getKind() == TypeKind.BOOLEAN ? "is" : "get") + capitalized;
+				}
+				if (property.setter == null && !field.getModifiers().contains(Modifier.FINAL)
+						&& (hasAnnotation(field, "lombok.Setter") || hasAnnotation(current, "lombok.Setter")
+								|| hasAnnotation(current, "lombok.Data"))) {
+					property.setter = "set" + capitalized;
+				}
+			}
+		}
+		properties.values().removeIf(property -> property.getter == null && property.setter == null);
+		return properties;
+	}
+
+	private TypeElement getSuperclass(TypeElement type) {
+		TypeMirror superclass = type.getSuperclass();
+		if (superclass.getKind() != TypeKind.DECLARED) {
+			return null;
+		}
+		TypeElement element = (TypeElement) ((DeclaredType) superclass).asElement();
+		if (element.getQualifiedName().contentEquals("java.lang.Object")) {
+			return null;
+		}
+		return element;
+	}
+
+	private Property getProperty(Map<String, Property> properties, String name, TypeMirror type) {
+		Property property = properties.get(name);
+		if (property == null) {
+			property = new Property(name, type);
+			properties.put(name, property);
+		}
+		return property;
+	}
+
+	private static String getPropertyName(String methodName, TypeMirror returnType) {
+		if (methodName.startsWith("get") && methodName.length() > 3 && !"getClass".equals(methodName)) {
+			return Introspector.decapitalize(methodName.substring(3));
+		}
+		if (methodName.startsWith("is") && methodName.length() > 2
+				&& returnType.getKind() == TypeKind.BOOLEAN) {
+			return Introspector.decapitalize(methodName.substring(2));
+		}
+		return null;
+	}
+
+	/**
+	 * Returns whether the type or any of its supertypes has a mapping annotation, which
+	 * reflective mapping applies to all properties of the type.
+	 */
+	private boolean hasInheritedMappingAnnotation(TypeElement type) {
+		if (hasMappingAnnotation(type)) {
+			return true;
+		}
+		for (TypeMirror supertype : this.processingEnv.getTypeUtils().directSupertypes(type.asType())) {
+			if (supertype.getKind() == TypeKind.DECLARED
+					&& hasInheritedMappingAnnotation((TypeElement) ((DeclaredType) supertype).asElement())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private boolean hasMappingAnnotation(Element element) {
+		for (AnnotationMirror annotation : element.getAnnotationMirrors()) {
+			if (annotation.getAnnotationType().toString().startsWith(MAPPING_PACKAGE + ".")) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean hasAnnotation(Element element, String annotationType) {
+		for (AnnotationMirror annotation : element.getAnnotationMirrors()) {
+			if (annotation.getAnnotationType().toString().equals(annotationType)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void write(PrintWriter writer, TypeElement type, String mapperName,
+			Iterable<Property> properties) {
+
+		String typeName = type.getQualifiedName().toString();
+		int packageEnd = mapperName.lastIndexOf('.');
+		if (packageEnd > 0) {
+			writer.println("package " + mapperName.substring(0, packageEnd) + ";");
+			writer.println();
+		}
+		writer.println("// Generated by " + getClass().getName() + ", do not edit.");
+		writer.println("public final class " + mapperName.substring(packageEnd + 1)
+				+ " implements org.springframework.data.gclouddatastore.repository.EntityMapper<"
+				+ typeName + "> {");
+		writer.println();
+		writer.println("\t@Override");
+		writer.println("\tpublic com.google.cloud.datastore.FullEntity<? extends com.google.cloud.datastore.IncompleteKey> toEntity("
+				+ typeName + " object, com.google.cloud.datastore.Key key) {");
+		writer.println("\t\tcom.google.cloud.datastore.FullEntity.Builder<? extends com.google.cloud.datastore.IncompleteKey> builder ="
+				+ " org.springframework.data.gclouddatastore.repository.EntityMappers.newBuilder(key);");
+		for (Property property : properties) {
+			if (property.getter != null) {
+				writeEncoder(writer, typeName, property);
+			}
+		}
+		writer.println("\t\treturn builder.build();");
+		writer.println("\t}");
+		writer.println();
+		writer.println("\t@Override");
+		writer.println("\tpublic " + typeName + " toObject(com.google.cloud.datastore.FullEntity<? extends com.google.cloud.datastore.IncompleteKey> entity) {");
+		writer.println("\t\t" + typeName + " object = new " + typeName + "();");
+		writer.println("\t\tfor (String name : entity.getNames()) {");
+		writer.println("\t\t\tcom.google.cloud.datastore.Value<?> value = entity.getValue(name);");
+		writer.println("\t\t\tswitch (name) {");
+		for (Property property : properties) {
+			writeDecoder(writer, typeName, property);
+		}
+		writer.println("\t\t\tdefault:");
+		writer.println("\t\t\t\tbreak;");
+		writer.println("\t\t\t}");
+		writer.println("\t\t}");
+		writer.println("\t\treturn object;");
+		writer.println("\t}");
+		writer.println("}");
+	}
+
+	private void writeEncoder(PrintWriter writer, String typeName, Property property) {
+		SimpleType simpleType = property.delegated ? null : SimpleType.of(property.type);
+		String getter = "object." + property.getter + "()";
+		String literal = javaString(property.name);
+		if (simpleType == null) {
+			writer.println("\t\tbuilder.set(" + literal
+					+ ", org.springframework.data.gclouddatastore.repository.EntityMappers.encode("
+					+ typeName + ".class, " + literal + ", " + getter + "));");
+		}
+		else if (simpleType.primitive) {
+			writer.println("\t\tbuilder.set(" + literal + ", " + simpleType.encode(getter) + ");");
+		}
+		else {
+			writer.println("\t\t{");
+			writer.println("\t\t\t" + property.type + " value = " + getter + ";");
+			writer.println("\t\t\tif (value == null) {");
+			writer.println("\t\t\t\tbuilder.set(" + literal + ", com.google.cloud.datastore.NullValue.of());");
+			writer.println("\t\t\t}");
+			writer.println("\t\t\telse {");
+			writer.println("\t\t\t\tbuilder.set(" + literal + ", " + simpleType.encode("value") + ");");
+			writer.println("\t\t\t}");
+			writer.println("\t\t}");
+		}
+	}
+
+	private void writeDecoder(PrintWriter writer, String typeName, Property property) {
+		SimpleType simpleType = property.delegated ? null : SimpleType.of(property.type);
+		String literal = javaString(property.name);
+		String delegate = "org.springframework.data.gclouddatastore.repository.EntityMappers.decode("
+				+ typeName + ".class, " + literal + ", value, object);";
+		writer.println("\t\t\tcase " + literal + ":");
+		if (simpleType == null || property.setter == null) {
+			writer.println("\t\t\t\t" + delegate);
+		}
+		else {
+			writer.println("\t\t\t\tif (value.getType() == com.google.cloud.datastore.ValueType."
+					+ simpleType.valueType + ") {");
+			writer.println("\t\t\t\t\tobject." + property.setter + "(" + simpleType.decode("value") + ");");
+			writer.println("\t\t\t\t}");
+			if (!simpleType.primitive) {
+				writer.println("\t\t\t\telse if (value.getType() == com.google.cloud.datastore.ValueType.NULL) {");
+				writer.println("\t\t\t\t\tobject." + property.setter + "(null);");
+				writer.println("\t\t\t\t}");
+			}
+			writer.println("\t\t\t\telse {");
+			writer.println("\t\t\t\t\t" + delegate);
+			writer.println("\t\t\t\t}");
+		}
+		writer.println("\t\t\t\tbreak;");
+	}
+
+	private static String javaString(String value) {
+		return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+	}
+
+	private static final class Property {
+
+		private final String name;
+		private final TypeMirror type;
+		private String getter;
+		private String setter;
+		private boolean delegated;
+
+		Property(String name, TypeMirror type) {
+			this.name = name;
+			this.type = type;
+		}
+	}
+
+	/**
+	 * Property types mapped inline, matching what the reflective marshaller writes and
+	 * the value type it reads without conversion.
+	 */
+	private enum SimpleType {
+
+		BOOLEAN("boolean", true, "BOOLEAN", "com.google.cloud.datastore.BooleanValue.of(%s)", "((com.google.cloud.datastore.BooleanValue) %s).get()"),
+		BOOLEAN_OBJECT("java.lang.Boolean", false, "BOOLEAN", "com.google.cloud.datastore.BooleanValue.of(%s)", "((com.google.cloud.datastore.BooleanValue) %s).get()"),
+		INT("int", true, "LONG", "com.google.cloud.datastore.LongValue.of(%s)", "((com.google.cloud.datastore.LongValue) %s).get().intValue()"),
+		INTEGER("java.lang.Integer", false, "LONG", "com.google.cloud.datastore.LongValue.of(%s)", "((com.google.cloud.datastore.LongValue) %s).get().intValue()"),
+		LONG("long", true, "LONG", "com.google.cloud.datastore.LongValue.of(%s)", "((com.google.cloud.datastore.LongValue) %s).get()"),
+		LONG_OBJECT("java.lang.Long", false, "LONG", "com.google.cloud.datastore.LongValue.of(%s)", "((com.google.cloud.datastore.LongValue) %s).get()"),
+		FLOAT("float", true, "DOUBLE", "com.google.cloud.datastore.DoubleValue.of(%s)", "((com.google.cloud.datastore.DoubleValue) %s).get().floatValue()"),
+		FLOAT_OBJECT("java.lang.Float", false, "DOUBLE", "com.google.cloud.datastore.DoubleValue.of(%s)", "((com.google.cloud.datastore.DoubleValue) %s).get().floatValue()"),
+		DOUBLE("double", true, "DOUBLE", "com.google.cloud.datastore.DoubleValue.of(%s)", "((com.google.cloud.datastore.DoubleValue) %s).get()"),
+		DOUBLE_OBJECT("java.lang.Double", false, "DOUBLE", "com.google.cloud.datastore.DoubleValue.of(%s)", "((com.google.cloud.datastore.DoubleValue) %s).get()"),
+		STRING("java.lang.String", false, "STRING", "org.springframework.data.gclouddatastore.repository.EntityMappers.encode(%s)", "((com.google.cloud.datastore.StringValue) %s).get()"),
+		BYTES("byte[]", false, "BLOB", "org.springframework.data.gclouddatastore.repository.EntityMappers.encode(%s)", "((com.google.cloud.datastore.BlobValue) %s).get().toByteArray()");
+
+		private final String typeName;
+		private final boolean primitive;
+		private final String valueType;
+		private final String encoder;
+		private final String decoder;
+
+		SimpleType(String typeName, boolean primitive, String valueType, String encoder, String decoder) {
+			this.typeName = typeName;
+			this.primitive = primitive;
+			this.valueType = valueType;
+			this.encoder = encoder;
+			this.decoder = decoder;
+		}
+
+		String encode(String expression) {
+			return String.format(this.encoder, expression);
+		}
+
+		String decode(String expression) {
+			return String.format(this.decoder, expression);
+		}
+
+		static SimpleType of(TypeMirror type) {
+			String typeName = type.toString();
+			for (SimpleType simpleType : values()) {
+				if (simpleType.typeName.equals(typeName)) {
+					return simpleType;
+				}
+			}
+			return null;
+		}
+	}
+
+	private static class UnmappableException extends RuntimeException {
+
+		UnmappableException(String message) {
+			super(message);
+		}
+	}
+}
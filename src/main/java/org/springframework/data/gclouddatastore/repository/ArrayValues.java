@@ -0,0 +1,166 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.data.gclouddatastore.repository;
+
+import java.util.List;
+
+import com.google.cloud.datastore.BooleanValue;
+import com.google.cloud.datastore.DoubleValue;
+import com.google.cloud.datastore.ListValue;
+import com.google.cloud.datastore.LongValue;
+import com.google.cloud.datastore.NullValue;
+import com.google.cloud.datastore.Value;
+import com.google.cloud.datastore.ValueType;
+
+/**
+ * Maps {@code long[]}, {@code int[]}, {@code double[]}, {@code float[]},
+ * {@code boolean[]} and {@code String[]} properties to and from list values directly,
+ * without an intermediate list of boxed elements. Null elements read as zero or
+ * {@code false} in primitive arrays.
+ */
+final class ArrayValues {
+
+	private ArrayValues() {
+	}
+
+	static boolean isSupported(Class<?> type) {
+		return type == long[].class || type == int[].class || type == double[].class
+				|| type == float[].class || type == boolean[].class || type == String[].class;
+	}
+
+	static ListValue toListValue(Object array) {
+		ListValue.Builder builder = ListValue.newBuilder();
+		if (array instanceof long[]) {
+			for (long element : (long[]) array) {
+				builder.addValue(LongValue.of(element));
+			}
+		}
+		else if (array instanceof int[]) {
+			for (int element : (int[]) array) {
+				builder.addValue(LongValue.of(element));
+			}
+		}
+		else if (array instanceof double[]) {
+			for (double element : (double[]) array) {
+				builder.addValue(DoubleValue.of(element));
+			}
+		}
+		else if (array instanceof float[]) {
+			for (float element : (float[]) array) {
+				builder.addValue(DoubleValue.of(element));
+			}
+		}
+		else if (array instanceof boolean[]) {
+			for (boolean element : (boolean[]) array) {
+				builder.addValue(BooleanValue.of(element));
+			}
+		}
+		else {
+			for (String element : (String[]) array) {
+				builder.addValue(element == null ? NullValue.of() : Marshaller.toStringValue(element));
+			}
+		}
+		return builder.build();
+	}
+
+	static ValueReader reader(Class<?> type) {
+		if (type == long[].class) {
+			return value -> {
+				List<? extends Value<?>> values = ((ListValue) value).get();
+				long[] array = new long[values.size()];
+				for (int i = 0; i < array.length; i++) {
+					array[i] = toNumber(values.get(i)).longValue();
+				}
+				return array;
+			};
+		}
+		else if (type == int[].class) {
+			return value -> {
+				List<? extends Value<?>> values = ((ListValue) value).get();
+				int[] array = new int[values.size()];
+				for (int i = 0; i < array.length; i++) {
+					array[i] = toNumber(values.get(i)).intValue();
+				}
+				return array;
+			};
+		}
+		else if (type == double[].class) {
+			return value -> {
+				List<? extends Value<?>> values = ((ListValue) value).get();
+				double[] array = new double[values.size()];
+				for (int i = 0; i < array.length; i++) {
+					array[i] = toNumber(values.get(i)).doubleValue();
+				}
+				return array;
+			};
+		}
+		else if (type == float[].class) {
+			return value -> {
+				List<? extends Value<?>> values = ((ListValue) value).get();
+				float[] array = new float[values.size()];
+				for (int i = 0; i < array.length; i++) {
+					array[i] = toNumber(values.get(i)).floatValue();
+				}
+				return array;
+			};
+		}
+		else if (type == boolean[].class) {
+			return value -> {
+				List<? extends Value<?>> values = ((ListValue) value).get();
+				boolean[] array = new boolean[values.size()];
+				for (int i = 0; i < array.length; i++) {
+					array[i] = toBoolean(values.get(i));
+				}
+				return array;
+			};
+		}
+		else if (type == String[].class) {
+			return value -> {
+				List<? extends Value<?>> values = ((ListValue) value).get();
+				String[] array = new String[values.size()];
+				for (int i = 0; i < array.length; i++) {
+					Value<?> element = values.get(i);
+					array[i] = element.getType() == ValueType.NULL ? null : String.valueOf(element.get());
+				}
+				return array;
+			};
+		}
+		return null;
+	}
+
+	private static boolean toBoolean(Value<?> value) {
+		switch (value.getType()) {
+		case BOOLEAN:
+			return ((BooleanValue) value).get();
+		case NULL:
+			return false;
+		default:
+			throw new MarshallingFailureException("Cannot read " + value.getType() + " as a boolean");
+		}
+	}
+
+	private static Number toNumber(Value<?> value) {
+		switch (value.getType()) {
+		case LONG:
+		case DOUBLE:
+			return (Number) value.get();
+		case NULL:
+			return 0;
+		default:
+			throw new MarshallingFailureException("Cannot read " + value.getType() + " as a number");
+		}
+	}
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.data.gclouddatastore.repository;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.Set;
+
+import com.google.cloud.datastore.Blob;
+import com.google.common.collect.MapMaker;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.UnsafeByteOperations;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.util.ReflectionUtils;
+
+/**
+ * Converts between {@link Blob} and buffer types without copying the bytes. A blob
+ * wrapping a {@link ByteBuffer} shares its content, so the buffer must not be modified
+ * until the entity has been written. An {@link InputStream} read from a blob is written
+ * back as that blob, while any other stream is copied into a blob, and can therefore
+ * only be written once.
+ */
+final class Blobs {
+
+	private static final Logger LOG = LoggerFactory.getLogger(Blobs.class);
+
+	// Blob only exposes copying factories, its ByteString constructor is package private.
+	private static final MethodHandle BLOB_CONSTRUCTOR = findBlobConstructor();
+
+	// Streams already read to their end, which would otherwise be written as empty blobs.
+	private static final Set<InputStream> READ_STREAMS = Collections.newSetFromMap(
+			new MapMaker().weakKeys().makeMap());
+
+	private Blobs() {
+	}
+
+	private static MethodHandle findBlobConstructor() {
+		try {
+			Constructor<Blob> constructor = Blob.class.getDeclaredConstructor(ByteString.class);
+			ReflectionUtils.makeAccessible(constructor);
+			return MethodHandles.lookup().unreflectConstructor(constructor)
+					.asType(MethodType.methodType(Blob.class, ByteString.class));
+		}
+		catch (ReflectiveOperationException | RuntimeException e) {
+			LOG.debug("Cannot access Blob constructor, blobs will be copied", e);
+			return null;
+		}
+	}
+
+	static Blob wrap(ByteString byteString) {
+		if (BLOB_CONSTRUCTOR != null) {
+			try {
+				return (Blob) BLOB_CONSTRUCTOR.invokeExact(byteString);
+			}
+			catch (RuntimeException | Error e) {
+				throw e;
+			}
+			catch (Throwable e) {
+				throw new MarshallingFailureException("Cannot create blob", e);
+			}
+		}
+		return Blob.copyFrom(byteString.asReadOnlyByteBuffer());
+	}
+
+	static Blob wrap(ByteBuffer buffer) {
+		return wrap(UnsafeByteOperations.unsafeWrap(buffer));
+	}
+
+	static InputStream newInputStream(Blob blob) {
+		return new BlobInputStream(blob);
+	}
+
+	static Blob read(InputStream in) {
+		if (in instanceof BlobInputStream) {
+			return ((BlobInputStream) in).blob;
+		}
+		if (!READ_STREAMS.add(in)) {
+			throw new MarshallingFailureException(
+					"InputStream has already been written, a stream can only be written once");
+		}
+		try {
+			return wrap(ByteString.readFrom(in));
+		}
+		catch (IOException e) {
+			throw new MarshallingFailureException("Cannot read blob", e);
+		}
+	}
+
+	static ByteString toByteString(Blob blob) {
+		return UnsafeByteOperations.unsafeWrap(blob.asReadOnlyByteBuffer());
+	}
+
+	/**
+	 * Stream over a blob, which is written back as the blob however much of it was read.
+	 */
+	private static final class BlobInputStream extends FilterInputStream {
+
+		private final Blob blob;
+
+		BlobInputStream(Blob blob) {
+			super(blob.asInputStream());
+			this.blob = blob;
+		}
+	}
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.data.gclouddatastore.repository;
+
+/**
+ * Observes the progress of a bulk write or delete, see
+ * {@link BulkWriteOptions#withListener(BulkWriteListener)}. Called from worker threads
+ * after each batch.
+ */
+@FunctionalInterface
+public interface BulkWriteListener {
+
+	/**
+	 * @param completed the number of entities processed so far, including those skipped
+	 * @param failed the number of entities in failed batches so far
+	 */
+	void onProgress(long completed, long failed);
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.data.gclouddatastore.repository;
+
+import java.util.concurrent.ExecutorService;
+
+import org.springframework.util.Assert;
+
+/**
+ * Settings of a bulk write or delete, see
+ * {@link org.springframework.data.gclouddatastore.GcloudDatastoreRepository#saveAllInBulk(Iterable, BulkWriteOptions)}
+ * and
+ * {@link org.springframework.data.gclouddatastore.GcloudDatastoreRepository#deleteAllInBulk(BulkWriteOptions)}.
+ * Instances are immutable; each {@code with} method returns a modified copy.
+ */
+public final class BulkWriteOptions {
+
+	private static final BulkWriteOptions DEFAULTS = new BulkWriteOptions(500,
+			Runtime.getRuntime().availableProcessors(), null, null);
+
+	private final int batchSize;
+	private final int maxConcurrentBatches;
+	private final ExecutorService executor;
+	private final BulkWriteListener listener;
+
+	private BulkWriteOptions(int batchSize, int maxConcurrentBatches, ExecutorService executor,
+			BulkWriteListener listener) {
+		this.batchSize = batchSize;
+		this.maxConcurrentBatches = maxConcurrentBatches;
+		this.executor = executor;
+		this.listener = listener;
+	}
+
+	/**
+	 * Returns options writing batches of 500 entities, one batch per available
+	 * processor at a time, on a thread pool created for each write.
+	 */
+	public static BulkWriteOptions defaults() {
+		return DEFAULTS;
+	}
+
+	/**
+	 * Sets the number of entities written or deleted per commit, at most 500.
+	 */
+	public BulkWriteOptions withBatchSize(int batchSize) {
+		Assert.isTrue(batchSize > 0 && batchSize <= 500, "Batch size must be between 1 and 500!");
+		return new BulkWriteOptions(batchSize, this.maxConcurrentBatches, this.executor, this.listener);
+	}
+
+	/**
+	 * Sets the number of batches marshalled or written at the same time. Reading the
+	 * input blocks while that many batches are pending, which bounds memory use.
+	 */
+	public BulkWriteOptions withMaxConcurrentBatches(int maxConcurrentBatches) {
+		Assert.isTrue(maxConcurrentBatches > 0, "Max concurrent batches must be positive!");
+		return new BulkWriteOptions(this.batchSize, maxConcurrentBatches, this.executor, this.listener);
+	}
+
+	/**
+	 * Sets the executor running the batches. It is not shut down after the write.
+	 */
+	public BulkWriteOptions withExecutor(ExecutorService executor) {
+		return new BulkWriteOptions(this.batchSize, this.maxConcurrentBatches, executor, this.listener);
+	}
+
+	/**
+	 * Sets the listener notified after each batch.
+	 */
+	public BulkWriteOptions withListener(BulkWriteListener listener) {
+		return new BulkWriteOptions(this.batchSize, this.maxConcurrentBatches, this.executor, listener);
+	}
+
+	public int getBatchSize() {
+		return this.batchSize;
+	}
+
+	public int getMaxConcurrentBatches() {
+		return this.maxConcurrentBatches;
+	}
+
+	public ExecutorService getExecutor() {
+		return this.executor;
+	}
+
+	public BulkWriteListener getListener() {
+		return this.listener;
+	}
+}
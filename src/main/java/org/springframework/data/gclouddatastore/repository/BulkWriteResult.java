@@ -0,0 +1,89 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.data.gclouddatastore.repository;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Outcome of a bulk write. Failed batches do not stop the write; their entities and
+ * the exception are reported here instead.
+ */
+public final class BulkWriteResult {
+
+	private final long writtenCount;
+	private final long skippedCount;
+	private final List<Failure> failures;
+
+	BulkWriteResult(long writtenCount, long skippedCount, List<Failure> failures) {
+		this.writtenCount = writtenCount;
+		this.skippedCount = skippedCount;
+		this.failures = Collections.unmodifiableList(failures);
+	}
+
+	/**
+	 * Returns the number of entities written.
+	 */
+	public long getWrittenCount() {
+		return this.writtenCount;
+	}
+
+	/**
+	 * Returns the number of entities not written because they were unchanged, see
+	 * {@link DirtyChecking}.
+	 */
+	public long getSkippedCount() {
+		return this.skippedCount;
+	}
+
+	public List<Failure> getFailures() {
+		return this.failures;
+	}
+
+	public boolean hasFailures() {
+		return !this.failures.isEmpty();
+	}
+
+	@Override
+	public String toString() {
+		return "BulkWriteResult [written=" + this.writtenCount + ", skipped=" + this.skippedCount
+				+ ", failures=" + this.failures.size() + "]";
+	}
+
+	/**
+	 * A batch that could not be written, or the entities of a batch that were rejected,
+	 * such as those exceeding the Datastore size limit.
+	 */
+	public static final class Failure {
+
+		private final List<?> entities;
+		private final Exception exception;
+
+		Failure(List<?> entities, Exception exception) {
+			this.entities = Collections.unmodifiableList(entities);
+			this.exception = exception;
+		}
+
+		public List<?> getEntities() {
+			return this.entities;
+		}
+
+		public Exception getException() {
+			return this.exception;
+		}
+	}
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.data.gclouddatastore.repository;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import com.google.cloud.datastore.PathElement;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Splits the input of a bulk write into batches and hands each batch to a worker,
+ * which marshals and writes it. The calling thread only reads the input, and waits
+ * whenever the configured number of batches is pending.
+ */
+final class BulkWriter {
+
+	private static final Logger LOG = LoggerFactory.getLogger(BulkWriter.class);
+
+	private BulkWriter() {
+	}
+
+	/**
+	 * Writes the given entities through {@code batchWriter}. The {@link Context}
+	 * ancestors of the calling thread are applied on the workers.
+	 */
+	static <S> BulkWriteResult write(Iterator<S> entities, BulkWriteOptions options,
+			BatchWriter<S> batchWriter) {
+
+		ExecutorService executor = options.getExecutor() != null ? options.getExecutor()
+				: Executors.newFixedThreadPool(options.getMaxConcurrentBatches());
+		Semaphore permits = new Semaphore(options.getMaxConcurrentBatches());
+		List<PathElement> ancestors = new ArrayList<>(Context.getAncestors());
+		AtomicLong written = new AtomicLong();
+		AtomicLong skipped = new AtomicLong();
+		AtomicLong failed = new AtomicLong();
+		List<BulkWriteResult.Failure> failures = Collections.synchronizedList(new ArrayList<>());
+
+		try {
+			while (entities.hasNext()) {
+				List<S> batch = new ArrayList<>(options.getBatchSize());
+				while (batch.size() < options.getBatchSize() && entities.hasNext()) {
+					batch.add(entities.next());
+				}
+
+				permits.acquireUninterruptibly();
+				try {
+					executor.execute(() -> {
+						try (Context context = Context.with(ancestors)) {
+							List<BulkWriteResult.Failure> rejected = new ArrayList<>();
+							int count = batchWriter.write(batch, rejected::add);
+							int rejectedCount = 0;
+							for (BulkWriteResult.Failure failure : rejected) {
+								LOG.warn("{} entities were rejected", failure.getEntities().size(), failure.getException());
+								failures.add(failure);
+								rejectedCount += failure.getEntities().size();
+							}
+							written.addAndGet(count);
+							skipped.addAndGet(batch.size() - count - rejectedCount);
+							failed.addAndGet(rejectedCount);
+						}
+						catch (Exception e) {
+							LOG.warn("Batch of {} entities failed", batch.size(), e);
+							failures.add(new BulkWriteResult.Failure(batch, e));
+							failed.addAndGet(batch.size());
+						}
+						finally {
+							try {
+								if (options.getListener() != null) {
+									options.getListener().onProgress(written.get() + skipped.get(), failed.get());
+								}
+							}
+							finally {
+								permits.release();
+							}
+						}
+					});
+				}
+				catch (RejectedExecutionException e) {
+					permits.release();
+					failures.add(new BulkWriteResult.Failure(batch, e));
+					failed.addAndGet(batch.size());
+				}
+			}
+			permits.acquireUninterruptibly(options.getMaxConcurrentBatches());
+		}
+		finally {
+			if (options.getExecutor() == null) {
+				executor.shutdown();
+			}
+		}
+		return new BulkWriteResult(written.get(), skipped.get(), new ArrayList<>(failures));
+	}
+
+	/**
+	 * Writes a batch of a bulk write.
+	 */
+	@FunctionalInterface
+	interface BatchWriter<S> {
+
+		/**
+		 * Writes the batch, reporting the entities it could not write to
+		 * {@code rejected} instead of failing the whole batch, and returns the number of
+		 * entities it wrote.
+		 */
+		int write(List<S> batch, Consumer<BulkWriteResult.Failure> rejected);
+	}
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.data.gclouddatastore.repository;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Stores a {@code String} or {@code byte[]} property as a compressed, unindexed blob.
+ * The blob starts with a short header marking it and identifying the codec, so values
+ * stay readable when the codec is changed, and blobs stored before the property was
+ * annotated are read unchanged. Strings shorter than the threshold are stored as plain
+ * strings, byte arrays with a header marking them uncompressed. Values that do not get
+ * smaller are not compressed either.
+ */
+@Target({ ElementType.FIELD, ElementType.METHOD })
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface Compressed {
+
+	Codec codec() default Codec.DEFLATE;
+
+	/**
+	 * Minimum size in bytes, UTF-8 encoded for strings, of values to compress.
+	 */
+	int threshold() default 1024;
+
+	enum Codec {
+		DEFLATE, GZIP
+	}
+}
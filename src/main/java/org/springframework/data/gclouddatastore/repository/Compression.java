@@ -0,0 +1,172 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.data.gclouddatastore.repository;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+import com.google.cloud.datastore.Blob;
+import com.google.cloud.datastore.BlobValue;
+import com.google.cloud.datastore.Value;
+import com.google.common.io.ByteStreams;
+import com.google.protobuf.ByteString;
+
+/**
+ * Encodes and decodes the values of {@link Compressed} properties. The stored blob starts
+ * with a marker byte, a format version and a byte identifying the codec. Blobs without
+ * a valid header were stored before the property was compressed and are read as they
+ * are.
+ */
+final class Compression {
+
+	private static final int MAGIC = 0xC2;
+
+	private static final int VERSION = 1;
+
+	/**
+	 * The number of bytes preceding the possibly compressed value.
+	 */
+	static final int HEADER_BYTES = 3;
+
+	private static final byte NONE = 0;
+	private static final byte DEFLATE = 1;
+	private static final byte GZIP = 2;
+
+	private Compression() {
+	}
+
+	/**
+	 * Returns the value to store, or {@code null} to store the value as usual.
+	 */
+	static Value<?> compress(Object value, Compressed compressed) {
+		byte[] bytes;
+		if (value instanceof String) {
+			bytes = ((String) value).getBytes(StandardCharsets.UTF_8);
+		}
+		else if (value instanceof byte[]) {
+			bytes = (byte[]) value;
+		}
+		else {
+			return null;
+		}
+
+		if (bytes.length >= compressed.threshold()) {
+			byte[] compressedBytes = compress(bytes, compressed.codec());
+			if (compressedBytes.length < bytes.length) {
+				return Marshaller.toBlobValue(Blob.copyFrom(compressedBytes));
+			}
+		}
+		if (value instanceof String) {
+			return null;
+		}
+		byte[] uncompressedBytes = new byte[bytes.length + HEADER_BYTES];
+		writeHeader(uncompressedBytes, NONE);
+		System.arraycopy(bytes, 0, uncompressedBytes, HEADER_BYTES, bytes.length);
+		return Marshaller.toBlobValue(Blob.copyFrom(uncompressedBytes));
+	}
+
+	private static void writeHeader(byte[] bytes, byte codec) {
+		bytes[0] = (byte) MAGIC;
+		bytes[1] = VERSION;
+		bytes[2] = codec;
+	}
+
+	private static byte[] compress(byte[] bytes, Compressed.Codec codec) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 2 + 16);
+		Deflater deflater = null;
+		try {
+			OutputStream compressedOut;
+			byte[] header = new byte[HEADER_BYTES];
+			if (codec == Compressed.Codec.GZIP) {
+				writeHeader(header, GZIP);
+				out.write(header);
+				compressedOut = new GZIPOutputStream(out);
+			}
+			else {
+				writeHeader(header, DEFLATE);
+				out.write(header);
+				deflater = new Deflater();
+				compressedOut = new DeflaterOutputStream(out, deflater);
+			}
+			compressedOut.write(bytes);
+			compressedOut.close();
+		}
+		catch (IOException e) {
+			throw new MarshallingFailureException("Cannot compress value", e);
+		}
+		finally {
+			if (deflater != null) {
+				deflater.end();
+			}
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * Returns whether the blob starts with a valid header: the marker, the format version
+	 * and a known codec.
+	 */
+	private static boolean isMarked(ByteString bytes) {
+		if (bytes.size() < HEADER_BYTES || (bytes.byteAt(0) & 0xFF) != MAGIC || bytes.byteAt(1) != VERSION) {
+			return false;
+		}
+		byte codec = bytes.byteAt(2);
+		return codec == NONE || codec == DEFLATE || codec == GZIP;
+	}
+
+	/**
+	 * Returns the stored bytes of a value, or the blob itself if it does not start with a
+	 * valid header, or does not decompress with the codec it names, since it is then a
+	 * legacy value whose first bytes happen to look like a header.
+	 */
+	static byte[] decompress(BlobValue value) {
+		ByteString bytes = Blobs.toByteString(value.get());
+		if (!isMarked(bytes)) {
+			return bytes.toByteArray();
+		}
+		InputStream in = bytes.substring(HEADER_BYTES).newInput();
+		try {
+			switch (bytes.byteAt(2)) {
+			case DEFLATE:
+				try (InputStream inflaterIn = new InflaterInputStream(in)) {
+					return ByteStreams.toByteArray(inflaterIn);
+				}
+			case GZIP:
+				try (InputStream gzipIn = new GZIPInputStream(in)) {
+					return ByteStreams.toByteArray(gzipIn);
+				}
+			default:
+				return ByteStreams.toByteArray(in);
+			}
+		}
+		catch (ZipException | EOFException e) {
+			return bytes.toByteArray();
+		}
+		catch (IOException e) {
+			throw new MarshallingFailureException("Cannot decompress value", e);
+		}
+	}
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.data.gclouddatastore.repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Function;
+
+import com.google.cloud.datastore.Cursor;
+import com.google.cloud.datastore.QueryResults;
+import com.google.cloud.datastore.StructuredQuery;
+
+import org.springframework.data.domain.AbstractPageRequest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.util.Assert;
+
+/**
+ * Page request starting from a Datastore query cursor, so that reading a page costs the
+ * same wherever it is, while an offset makes Datastore read and bill every skipped
+ * entity. The pageables of the slices returned by
+ * {@link org.springframework.data.gclouddatastore.GcloudDatastoreRepository#findSlice(Pageable)}
+ * and by derived query methods returning a {@link Slice} are cursor pageables, whose
+ * {@link #next()} continues after the last entity of the slice. The continuation token
+ * of a page can be handed to clients, and turned back into the page with
+ * {@link #of(int, int, Sort, String)}.
+ */
+public final class CursorPageable extends AbstractPageRequest {
+
+	private static final long serialVersionUID = 1L;
+
+	private final Sort sort;
+	private final Cursor cursor;
+	private final Cursor nextCursor;
+
+	private CursorPageable(int page, int size, Sort sort, Cursor cursor, Cursor nextCursor) {
+		super(page, size);
+		Assert.notNull(sort, "Sort must not be null!");
+		this.sort = sort;
+		this.cursor = cursor;
+		this.nextCursor = nextCursor;
+	}
+
+	/**
+	 * Returns the unsorted first page of the given size.
+	 */
+	public static CursorPageable of(int size) {
+		return of(size, Sort.unsorted());
+	}
+
+	/**
+	 * Returns the first page of the given size and order.
+	 */
+	public static CursorPageable of(int size, Sort sort) {
+		return new CursorPageable(0, size, sort, null, null);
+	}
+
+	/**
+	 * Returns the page starting from the given continuation token, or from the offset of
+	 * the page number if the token is {@code null}.
+	 */
+	public static CursorPageable of(int page, int size, Sort sort, String continuationToken) {
+		Cursor cursor = continuationToken == null ? null : Cursor.fromUrlSafe(continuationToken);
+		return new CursorPageable(page, size, sort, cursor, null);
+	}
+
+	/**
+	 * Returns the cursor the page starts from, or {@code null} if it starts from its
+	 * offset.
+	 */
+	public Cursor getCursor() {
+		return this.cursor;
+	}
+
+	/**
+	 * Returns the URL-safe form of the cursor the page starts from, or {@code null} if it
+	 * starts from its offset.
+	 */
+	public String getContinuationToken() {
+		return this.cursor == null ? null : this.cursor.toUrlSafe();
+	}
+
+	@Override
+	public Sort getSort() {
+		return this.sort;
+	}
+
+	/**
+	 * Returns the next page, starting from the cursor after this page if it has been
+	 * read.
+	 */
+	@Override
+	public Pageable next() {
+		return new CursorPageable(getPageNumber() + 1, getPageSize(), this.sort, this.nextCursor, null);
+	}
+
+	/**
+	 * Returns the previous page, which starts from its offset since cursors only lead
+	 * forward.
+	 */
+	@Override
+	public Pageable previous() {
+		return getPageNumber() == 0 ? this : PageRequest.of(getPageNumber() - 1, getPageSize(), this.sort);
+	}
+
+	@Override
+	public Pageable first() {
+		return of(getPageSize(), this.sort);
+	}
+
+	/**
+	 * Restricts a query to the given page: from its cursor if it is a cursor pageable
+	 * that has one, from its offset otherwise. One more entity than the page size is
+	 * requested to find out whether there is a next page.
+	 */
+	public static void applyTo(Pageable pageable, StructuredQuery.Builder<?> queryBuilder) {
+		Cursor cursor = pageable instanceof CursorPageable ? ((CursorPageable) pageable).cursor : null;
+		if (cursor != null) {
+			queryBuilder.setStartCursor(cursor);
+		}
+		else {
+			queryBuilder.setOffset(Math.toIntExact(pageable.getOffset()));
+		}
+		queryBuilder.setLimit(pageable.getPageSize() + 1);
+	}
+
+	/**
+	 * Reads the page from the results of a query restricted by
+	 * {@link #applyTo(Pageable, StructuredQuery.Builder)}.
+	 */
+	public static <R, T> Slice<T> toSlice(Pageable pageable, QueryResults<R> results,
+			Function<? super R, ? extends T> converter) {
+		List<T> content = new ArrayList<>(pageable.getPageSize());
+		while (content.size() < pageable.getPageSize() && results.hasNext()) {
+			content.add(converter.apply(results.next()));
+		}
+		// Checking for more results moves the cursor past the next entity.
+		Cursor cursorAfter = results.getCursorAfter();
+		boolean hasNext = results.hasNext();
+
+		Cursor cursor = pageable instanceof CursorPageable ? ((CursorPageable) pageable).cursor : null;
+		CursorPageable page = new CursorPageable(pageable.getPageNumber(), pageable.getPageSize(),
+				pageable.getSort(), cursor, hasNext ? cursorAfter : null);
+		return new SliceImpl<>(content, page, hasNext);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof CursorPageable)) {
+			return false;
+		}
+		CursorPageable that = (CursorPageable) obj;
+		return super.equals(that) && this.sort.equals(that.sort) && Objects.equals(this.cursor, that.cursor);
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * super.hashCode() + Objects.hash(this.sort, this.cursor);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("Cursor page request [number: %d, size %d, sort: %s, cursor: %s]", getPageNumber(),
+				getPageSize(), this.sort, getContinuationToken());
+	}
+}
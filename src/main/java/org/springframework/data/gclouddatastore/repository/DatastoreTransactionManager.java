@@ -0,0 +1,204 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.data.gclouddatastore.repository;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import com.google.cloud.datastore.DatastoreException;
+import com.google.cloud.datastore.DatastoreOptions;
+import com.google.cloud.datastore.Transaction;
+
+import org.springframework.transaction.InvalidIsolationLevelException;
+import org.springframework.transaction.InvalidTimeoutException;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionSystemException;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.transaction.support.SmartTransactionObject;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.Assert;
+
+/**
+ * Binds a Datastore {@link Transaction} to the thread, for {@code @Transactional}
+ * methods. Repositories created with the same {@link DatastoreOptions} look up entities
+ * by key through the transaction, and buffer their saves and deletes in it, so that all
+ * of them are sent in a single commit. A transaction can hold at most 500 mutations, and
+ * other queries than ancestor queries run outside of it. Bulk writes and deletes run on
+ * other threads and are never part of a transaction.
+ * <p>
+ * Datastore transactions are serializable and cannot be given a timeout, so other
+ * isolation levels and timeouts are rejected. A read-only transaction is rolled back
+ * instead of committed, discarding the saves and deletes buffered in it.
+ */
+public class DatastoreTransactionManager extends AbstractPlatformTransactionManager {
+
+	private static final long serialVersionUID = 1L;
+
+	private final DatastoreOptions datastoreOptions;
+
+	public DatastoreTransactionManager(DatastoreOptions datastoreOptions) {
+		Assert.notNull(datastoreOptions, "DatastoreOptions must not be null!");
+		this.datastoreOptions = datastoreOptions;
+	}
+
+	/**
+	 * Returns the transaction bound to the thread for the given options, or {@code null}
+	 * if there is none.
+	 */
+	static TransactionHolder getTransactionHolder(DatastoreOptions datastoreOptions) {
+		TransactionHolder holder = (TransactionHolder) TransactionSynchronizationManager
+				.getResource(datastoreOptions);
+		return holder != null && holder.getTransaction().isActive() ? holder : null;
+	}
+
+	@Override
+	protected Object doGetTransaction() {
+		return new TransactionObject(
+				(TransactionHolder) TransactionSynchronizationManager.getResource(this.datastoreOptions));
+	}
+
+	@Override
+	protected boolean isExistingTransaction(Object transaction) {
+		TransactionHolder holder = ((TransactionObject) transaction).holder;
+		return holder != null && holder.getTransaction().isActive();
+	}
+
+	@Override
+	protected void doBegin(Object transaction, TransactionDefinition definition) {
+		int isolationLevel = definition.getIsolationLevel();
+		if (isolationLevel != TransactionDefinition.ISOLATION_DEFAULT
+				&& isolationLevel != TransactionDefinition.ISOLATION_SERIALIZABLE) {
+			throw new InvalidIsolationLevelException(
+					"Datastore transactions only support serializable isolation, not level " + isolationLevel);
+		}
+		int timeout = determineTimeout(definition);
+		if (timeout != TransactionDefinition.TIMEOUT_DEFAULT) {
+			throw new InvalidTimeoutException("Datastore transactions do not support timeouts", timeout);
+		}
+
+		TransactionHolder holder = new TransactionHolder(this.datastoreOptions.getService().newTransaction());
+		((TransactionObject) transaction).holder = holder;
+		TransactionSynchronizationManager.bindResource(this.datastoreOptions, holder);
+	}
+
+	@Override
+	protected Object doSuspend(Object transaction) {
+		((TransactionObject) transaction).holder = null;
+		return TransactionSynchronizationManager.unbindResource(this.datastoreOptions);
+	}
+
+	@Override
+	protected void doResume(Object transaction, Object suspendedResources) {
+		TransactionSynchronizationManager.bindResource(this.datastoreOptions, suspendedResources);
+	}
+
+	@Override
+	protected void doCommit(DefaultTransactionStatus status) {
+		if (status.isReadOnly()) {
+			doRollback(status);
+			return;
+		}
+
+		TransactionHolder holder = ((TransactionObject) status.getTransaction()).holder;
+		try {
+			holder.getTransaction().commit();
+			holder.committed = true;
+		}
+		catch (DatastoreException e) {
+			throw new TransactionSystemException("Could not commit Datastore transaction", e);
+		}
+	}
+
+	@Override
+	protected void doRollback(DefaultTransactionStatus status) {
+		Transaction transaction = ((TransactionObject) status.getTransaction()).holder.getTransaction();
+		try {
+			if (transaction.isActive()) {
+				transaction.rollback();
+			}
+		}
+		catch (DatastoreException e) {
+			throw new TransactionSystemException("Could not roll back Datastore transaction", e);
+		}
+	}
+
+	@Override
+	protected void doSetRollbackOnly(DefaultTransactionStatus status) {
+		((TransactionObject) status.getTransaction()).holder.rollbackOnly = true;
+	}
+
+	@Override
+	protected void doCleanupAfterCompletion(Object transaction) {
+		TransactionHolder holder = ((TransactionObject) transaction).holder;
+		TransactionSynchronizationManager.unbindResource(this.datastoreOptions);
+		holder.completionCallbacks.values().forEach(callback -> callback.accept(holder.committed));
+	}
+
+	@Override
+	public String toString() {
+		return "DatastoreTransactionManager [" + this.datastoreOptions.getProjectId() + "]";
+	}
+
+	/**
+	 * Transaction bound to the thread, with the callbacks of the repositories that wrote
+	 * in it.
+	 */
+	static final class TransactionHolder {
+
+		private final Transaction transaction;
+		private final Map<Object, Consumer<Boolean>> completionCallbacks = new LinkedHashMap<>();
+		private boolean committed;
+		private boolean rollbackOnly;
+
+		TransactionHolder(Transaction transaction) {
+			this.transaction = transaction;
+		}
+
+		Transaction getTransaction() {
+			return this.transaction;
+		}
+
+		/**
+		 * Registers the callback of the given owner, called with whether the transaction
+		 * was committed once it completes.
+		 */
+		void onCompletion(Object owner, Consumer<Boolean> callback) {
+			this.completionCallbacks.putIfAbsent(owner, callback);
+		}
+	}
+
+	private static final class TransactionObject implements SmartTransactionObject {
+
+		private TransactionHolder holder;
+
+		TransactionObject(TransactionHolder holder) {
+			this.holder = holder;
+		}
+
+		@Override
+		public boolean isRollbackOnly() {
+			return this.holder != null && this.holder.rollbackOnly;
+		}
+
+		@Override
+		public void flush() {
+			// Mutations are only sent on commit.
+		}
+	}
+}
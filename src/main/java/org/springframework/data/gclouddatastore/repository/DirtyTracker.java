@@ -0,0 +1,187 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.data.gclouddatastore.repository;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.google.cloud.Timestamp;
+import com.google.cloud.datastore.BaseEntity;
+import com.google.cloud.datastore.BlobValue;
+import com.google.cloud.datastore.BooleanValue;
+import com.google.cloud.datastore.DoubleValue;
+import com.google.cloud.datastore.EntityValue;
+import com.google.cloud.datastore.KeyValue;
+import com.google.cloud.datastore.LatLng;
+import com.google.cloud.datastore.LatLngValue;
+import com.google.cloud.datastore.ListValue;
+import com.google.cloud.datastore.LongValue;
+import com.google.cloud.datastore.RawValue;
+import com.google.cloud.datastore.StringValue;
+import com.google.cloud.datastore.TimestampValue;
+import com.google.cloud.datastore.Value;
+import com.google.common.collect.MapMaker;
+import com.google.common.hash.Funnels;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.protobuf.ByteString;
+
+/**
+ * Remembers a 128-bit fingerprint of the marshalled properties of each loaded or saved
+ * instance, keyed weakly by identity, for {@link DirtyChecking}. Both entity forms are
+ * fingerprinted in name order, so the same properties always give the same fingerprint
+ * however they were read.
+ */
+final class DirtyTracker {
+
+	private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+
+	private final ConcurrentMap<Object, HashCode> fingerprints = new MapMaker().weakKeys().makeMap();
+
+	void track(Object object, HashCode fingerprint) {
+		this.fingerprints.put(object, fingerprint);
+	}
+
+	void forget(Object object) {
+		this.fingerprints.remove(object);
+	}
+
+	void clear() {
+		this.fingerprints.clear();
+	}
+
+	boolean isDirty(Object object, HashCode fingerprint) {
+		return !fingerprint.equals(this.fingerprints.get(object));
+	}
+
+	static HashCode fingerprint(BaseEntity<?> entity) {
+		Hasher hasher = HASH_FUNCTION.newHasher();
+		putEntity(hasher, entity);
+		return hasher.hash();
+	}
+
+	static HashCode fingerprint(com.google.datastore.v1.Entity entity) {
+		Hasher hasher = HASH_FUNCTION.newHasher();
+		putEntity(hasher, entity);
+		return hasher.hash();
+	}
+
+	private static void putEntity(Hasher hasher, BaseEntity<?> entity) {
+		// Names are sorted already.
+		hasher.putInt(entity.getNames().size());
+		for (String name : entity.getNames()) {
+			putString(hasher, name);
+			putValue(hasher, entity.getValue(name));
+		}
+	}
+
+	private static void putValue(Hasher hasher, Value<?> value) {
+		hasher.putInt(value.getType().ordinal()).putBoolean(value.excludeFromIndexes());
+		switch (value.getType()) {
+		case BOOLEAN:
+			hasher.putBoolean(((BooleanValue) value).get());
+			break;
+		case LONG:
+			hasher.putLong(((LongValue) value).get());
+			break;
+		case DOUBLE:
+			hasher.putDouble(((DoubleValue) value).get());
+			break;
+		case STRING:
+			putString(hasher, ((StringValue) value).get());
+			break;
+		case BLOB:
+			putBytes(hasher, Blobs.toByteString(((BlobValue) value).get()));
+			break;
+		case TIMESTAMP:
+			Timestamp timestamp = ((TimestampValue) value).get();
+			hasher.putLong(timestamp.getSeconds()).putInt(timestamp.getNanos());
+			break;
+		case LAT_LNG:
+			LatLng latLng = ((LatLngValue) value).get();
+			hasher.putDouble(latLng.getLatitude()).putDouble(latLng.getLongitude());
+			break;
+		case KEY:
+			putBytes(hasher, ProtoEntityCodec.toKey(((KeyValue) value).get()).toByteString());
+			break;
+		case LIST:
+			hasher.putInt(((ListValue) value).get().size());
+			for (Value<?> element : ((ListValue) value).get()) {
+				putValue(hasher, element);
+			}
+			break;
+		case ENTITY:
+			putEntity(hasher, ((EntityValue) value).get());
+			break;
+		case RAW_VALUE:
+			putBytes(hasher, ((RawValue) value).get().toByteString());
+			break;
+		case NULL:
+		default:
+			break;
+		}
+	}
+
+	private static void putEntity(Hasher hasher, com.google.datastore.v1.Entity entity) {
+		// Protobuf maps keep the order in which properties were added or parsed.
+		Map<String, com.google.datastore.v1.Value> properties = new TreeMap<>(entity.getPropertiesMap());
+		hasher.putInt(properties.size());
+		for (Map.Entry<String, com.google.datastore.v1.Value> entry : properties.entrySet()) {
+			putString(hasher, entry.getKey());
+			putValue(hasher, entry.getValue());
+		}
+	}
+
+	private static void putValue(Hasher hasher, com.google.datastore.v1.Value value) {
+		switch (value.getValueTypeCase()) {
+		case ENTITY_VALUE:
+			hasher.putInt(value.getValueTypeCase().ordinal()).putBoolean(value.getExcludeFromIndexes());
+			putEntity(hasher, value.getEntityValue());
+			break;
+		case ARRAY_VALUE:
+			hasher.putInt(value.getValueTypeCase().ordinal()).putBoolean(value.getExcludeFromIndexes());
+			hasher.putInt(value.getArrayValue().getValuesCount());
+			for (com.google.datastore.v1.Value element : value.getArrayValue().getValuesList()) {
+				putValue(hasher, element);
+			}
+			break;
+		default:
+			// Scalar values contain no maps, so their encoding is deterministic.
+			putBytes(hasher, value.toByteString());
+			break;
+		}
+	}
+
+	private static void putString(Hasher hasher, String value) {
+		hasher.putInt(value.length()).putUnencodedChars(value);
+	}
+
+	private static void putBytes(Hasher hasher, ByteString value) {
+		hasher.putInt(value.size());
+		try (OutputStream output = Funnels.asOutputStream(hasher)) {
+			value.writeTo(output);
+		}
+		catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
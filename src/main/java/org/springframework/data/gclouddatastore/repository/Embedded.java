@@ -0,0 +1,48 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.data.gclouddatastore.repository;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Chooses how an embedded object, map or list property is stored.
+ */
+@Target({ ElementType.FIELD, ElementType.METHOD })
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface Embedded {
+
+	Storage storage() default Storage.ENTITY;
+
+	enum Storage {
+
+		/**
+		 * Stores the value as an embedded entity, whose properties can be indexed.
+		 */
+		ENTITY,
+
+		/**
+		 * Stores the value as a compact, unindexed binary blob. Property names are
+		 * written once per blob, and no index entries are created. Properties
+		 * declared as {@code Map} decode the blob on first access.
+		 */
+		BLOB
+	}
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.data.gclouddatastore.repository;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.cloud.Timestamp;
+import com.google.cloud.datastore.Blob;
+import com.google.cloud.datastore.BlobValue;
+import com.google.cloud.datastore.BooleanValue;
+import com.google.cloud.datastore.DoubleValue;
+import com.google.cloud.datastore.EntityValue;
+import com.google.cloud.datastore.FullEntity;
+import com.google.cloud.datastore.IncompleteKey;
+import com.google.cloud.datastore.LatLng;
+import com.google.cloud.datastore.LatLngValue;
+import com.google.cloud.datastore.ListValue;
+import com.google.cloud.datastore.LongValue;
+import com.google.cloud.datastore.NullValue;
+import com.google.cloud.datastore.StringValue;
+import com.google.cloud.datastore.TimestampValue;
+import com.google.cloud.datastore.Value;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+
+/**
+ * Binary format of {@link Embedded.Storage#BLOB} properties. Values are written with a
+ * tag byte followed by varint, fixed64 or length-delimited payloads, and each property
+ * name is written once and referred to by its index afterwards, so that lists of
+ * embedded objects do not repeat their names.
+ */
+final class EmbeddedBlobCodec {
+
+	private static final int MAGIC = 0xEB;
+
+	private static final int VERSION = 1;
+
+	private static final int NULL = 0;
+	private static final int FALSE = 1;
+	private static final int TRUE = 2;
+	private static final int LONG = 3;
+	private static final int DOUBLE = 4;
+	private static final int STRING = 5;
+	private static final int BLOB = 6;
+	private static final int TIMESTAMP = 7;
+	private static final int LAT_LNG = 8;
+	private static final int LIST = 9;
+	private static final int ENTITY = 10;
+
+	private EmbeddedBlobCodec() {
+	}
+
+	static Blob encode(Value<?> value) {
+		ByteString.Output out = ByteString.newOutput();
+		try {
+			CodedOutputStream output = CodedOutputStream.newInstance(out);
+			output.writeRawByte(MAGIC);
+			output.writeRawByte(VERSION);
+			write(output, value, new HashMap<>());
+			output.flush();
+		}
+		catch (IOException e) {
+			throw new MarshallingFailureException("Cannot encode embedded value", e);
+		}
+		return Blobs.wrap(out.toByteString());
+	}
+
+	private static void write(CodedOutputStream output, Value<?> value, Map<String, Integer> names)
+			throws IOException {
+
+		switch (value.getType()) {
+		case NULL:
+			output.writeRawByte(NULL);
+			break;
+		case BOOLEAN:
+			output.writeRawByte(((BooleanValue) value).get() ? TRUE : FALSE);
+			break;
+		case LONG:
+			output.writeRawByte(LONG);
+			output.writeSInt64NoTag(((LongValue) value).get());
+			break;
+		case DOUBLE:
+			output.writeRawByte(DOUBLE);
+			output.writeDoubleNoTag(((DoubleValue) value).get());
+			break;
+		case STRING:
+			output.writeRawByte(STRING);
+			output.writeStringNoTag(((StringValue) value).get());
+			break;
+		case BLOB:
+			output.writeRawByte(BLOB);
+			output.writeBytesNoTag(Blobs.toByteString(((BlobValue) value).get()));
+			break;
+		case TIMESTAMP:
+			Timestamp timestamp = ((TimestampValue) value).get();
+			output.writeRawByte(TIMESTAMP);
+			output.writeSInt64NoTag(timestamp.getSeconds());
+			output.writeUInt32NoTag(timestamp.getNanos());
+			break;
+		case LAT_LNG:
+			LatLng latLng = ((LatLngValue) value).get();
+			output.writeRawByte(LAT_LNG);
+			output.writeDoubleNoTag(latLng.getLatitude());
+			output.writeDoubleNoTag(latLng.getLongitude());
+			break;
+		case LIST:
+			List<? extends Value<?>> list = ((ListValue) value).get();
+			output.writeRawByte(LIST);
+			output.writeUInt32NoTag(list.size());
+			for (Value<?> element : list) {
+				write(output, element, names);
+			}
+			break;
+		case ENTITY:
+			FullEntity<?> entity = ((EntityValue) value).get();
+			output.writeRawByte(ENTITY);
+			output.writeUInt32NoTag(entity.getNames().size());
+			for (String name : entity.getNames()) {
+				Integer index = names.get(name);
+				if (index == null) {
+					output.writeUInt32NoTag(names.size());
+					output.writeStringNoTag(name);
+					names.put(name, names.size());
+				}
+				else {
+					output.writeUInt32NoTag(index);
+				}
+				write(output, entity.getValue(name), names);
+			}
+			break;
+		default:
+			throw new MarshallingFailureException("Cannot encode embedded " + value.getType() + " value");
+		}
+	}
+
+	static boolean isEncoded(Blob blob) {
+		return blob.getLength() > 2 && (Blobs.toByteString(blob).byteAt(0) & 0xFF) == MAGIC;
+	}
+
+	static Value<?> decode(Blob blob) {
+		if (!isEncoded(blob)) {
+			throw new MarshallingFailureException("Not an embedded blob");
+		}
+		try {
+			CodedInputStream input = CodedInputStream.newInstance(blob.asReadOnlyByteBuffer());
+			input.readRawByte();
+			int version = input.readRawByte();
+			if (version != VERSION) {
+				throw new MarshallingFailureException("Unknown embedded blob version: " + version);
+			}
+			return read(input, new ArrayList<>());
+		}
+		catch (IOException e) {
+			throw new MarshallingFailureException("Cannot decode embedded value", e);
+		}
+	}
+
+	private static Value<?> read(CodedInputStream input, List<String> names) throws IOException {
+		int tag = input.readRawByte();
+		switch (tag) {
+		case NULL:
+			return NullValue.of();
+		case FALSE:
+			return BooleanValue.of(false);
+		case TRUE:
+			return BooleanValue.of(true);
+		case LONG:
+			return LongValue.of(input.readSInt64());
+		case DOUBLE:
+			return DoubleValue.of(input.readDouble());
+		case STRING:
+			return StringValue.of(input.readStringRequireUtf8());
+		case BLOB:
+			return BlobValue.of(Blobs.wrap(input.readBytes()));
+		case TIMESTAMP:
+			long seconds = input.readSInt64();
+			return TimestampValue.of(Timestamp.ofTimeSecondsAndNanos(seconds, input.readUInt32()));
+		case LAT_LNG:
+			double latitude = input.readDouble();
+			return LatLngValue.of(LatLng.of(latitude, input.readDouble()));
+		case LIST:
+			int size = input.readUInt32();
+			ListValue.Builder listBuilder = ListValue.newBuilder();
+			for (int i = 0; i < size; i++) {
+				listBuilder.addValue(read(input, names));
+			}
+			return listBuilder.build();
+		case ENTITY:
+			int propertyCount = input.readUInt32();
+			FullEntity.Builder<IncompleteKey> entityBuilder = FullEntity.newBuilder();
+			for (int i = 0; i < propertyCount; i++) {
+				int index = input.readUInt32();
+				if (index == names.size()) {
+					names.add(input.readStringRequireUtf8());
+				}
+				else if (index > names.size()) {
+					throw new MarshallingFailureException("Invalid embedded property name index: " + index);
+				}
+				entityBuilder.set(names.get(index), read(input, names));
+			}
+			return EntityValue.of(entityBuilder.build());
+		default:
+			throw new MarshallingFailureException("Unknown embedded value tag: " + tag);
+		}
+	}
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.data.gclouddatastore.repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import com.google.cloud.datastore.Key;
+import com.google.cloud.datastore.PathElement;
+
+/**
+ * Cached entity counts of one kind per ancestor path, for {@link MaintainedCount}. An
+ * entity belongs to the count of every prefix of its ancestor path, since ancestor
+ * queries match all descendants. Counts are only known to this process: they expire
+ * after a while, and writes through this repository invalidate the counts they touch
+ * rather than adjust them, which would take a lookup to tell inserts from updates.
+ */
+final class EntityCounter {
+
+	private final long expiryNanos;
+	private final ConcurrentMap<List<PathElement>, Count> counts = new ConcurrentHashMap<>();
+
+	EntityCounter(long expirySeconds) {
+		this.expiryNanos = TimeUnit.SECONDS.toNanos(expirySeconds);
+	}
+
+	/**
+	 * Returns the count under the given ancestors, or {@code null} if it is unknown or
+	 * expired.
+	 */
+	Long get(List<PathElement> ancestors) {
+		Count count = this.counts.get(ancestors);
+		if (count == null || System.nanoTime() - count.countedAt >= this.expiryNanos) {
+			return null;
+		}
+		return count.value;
+	}
+
+	void set(List<PathElement> ancestors, long value) {
+		this.counts.put(new ArrayList<>(ancestors), new Count(value));
+	}
+
+	/**
+	 * Forgets the counts that the given keys belong to.
+	 */
+	void invalidate(Iterable<Key> keys) {
+		if (this.counts.isEmpty()) {
+			return;
+		}
+		for (Key key : keys) {
+			List<PathElement> ancestors = key.getAncestors();
+			for (int i = 0; i <= ancestors.size(); i++) {
+				this.counts.remove(ancestors.subList(0, i));
+			}
+		}
+	}
+
+	void clear() {
+		this.counts.clear();
+	}
+
+	private static final class Count {
+
+		final long value;
+		final long countedAt = System.nanoTime();
+
+		Count(long value) {
+			this.value = value;
+		}
+	}
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.data.gclouddatastore.repository;
+
+import com.google.cloud.datastore.FullEntity;
+
+/**
+ * Creates instances of a domain class from a Datastore entity, either through its
+ * no-argument constructor or by binding entity properties to constructor arguments.
+ *
+ * @see EntityInstantiators
+ */
+interface EntityInstantiator<T> {
+
+	T createInstance(FullEntity<?> entity);
+
+	/**
+	 * Returns whether the given property has already been bound by
+	 * {@link #createInstance(FullEntity)} and must not be set afterwards.
+	 */
+	boolean isConstructorProperty(String name);
+}
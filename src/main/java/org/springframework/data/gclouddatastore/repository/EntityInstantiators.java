@@ -0,0 +1,263 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.data.gclouddatastore.repository;
+
+import java.beans.ConstructorProperties;
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Supplier;
+
+import com.google.cloud.datastore.FullEntity;
+import com.google.cloud.datastore.Value;
+import com.google.common.base.Defaults;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.core.DefaultParameterNameDiscoverer;
+import org.springframework.core.ParameterNameDiscoverer;
+import org.springframework.data.annotation.PersistenceConstructor;
+import org.springframework.util.ReflectionUtils;
+
+/**
+ * Resolves the {@link EntityInstantiator} of a domain class. The constructor is picked
+ * in this order:
+ * <ol>
+ * <li>the constructor annotated with {@link PersistenceConstructor},</li>
+ * <li>the no-argument constructor,</li>
+ * <li>the only declared constructor,</li>
+ * <li>the record-style constructor taking every instance field in declaration
+ * order,</li>
+ * <li>the {@link ConstructorProperties} annotated constructor with the most
+ * arguments, as generated by Lombok's {@code @AllArgsConstructor}.</li>
+ * </ol>
+ * Constructor arguments are bound by name, taken from {@link ConstructorProperties},
+ * the compiled parameter names or, for record-style constructors, the field names.
+ */
+final class EntityInstantiators {
+
+	private static final Logger LOG = LoggerFactory.getLogger(EntityInstantiators.class);
+
+	private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+	private static final ParameterNameDiscoverer PARAMETER_NAME_DISCOVERER = new DefaultParameterNameDiscoverer();
+
+	private EntityInstantiators() {
+	}
+
+	/**
+	 * Returns the instantiator of the given type, or {@code null} if it cannot be
+	 * instantiated.
+	 */
+	@SuppressWarnings("unchecked")
+	static <T> EntityInstantiator<T> create(Class<T> type) {
+		if (type.isInterface() || type.isArray() || type.isPrimitive()
+				|| Modifier.isAbstract(type.getModifiers())
+				|| (type.isMemberClass() && !Modifier.isStatic(type.getModifiers()))) {
+			return null;
+		}
+
+		List<Constructor<T>> constructors = new ArrayList<>();
+		for (Constructor<?> constructor : type.getDeclaredConstructors()) {
+			if (!constructor.isSynthetic()) {
+				constructors.add((Constructor<T>) constructor);
+			}
+		}
+
+		for (Constructor<T> constructor : constructors) {
+			if (constructor.isAnnotationPresent(PersistenceConstructor.class)) {
+				return create(constructor, null);
+			}
+		}
+		for (Constructor<T> constructor : constructors) {
+			if (constructor.getParameterCount() == 0) {
+				return create(constructor, null);
+			}
+		}
+		if (constructors.size() == 1) {
+			return create(constructors.get(0), null);
+		}
+
+		List<Field> fields = new ArrayList<>();
+		for (Field field : type.getDeclaredFields()) {
+			if (!Modifier.isStatic(field.getModifiers()) && !Modifier.isTransient(field.getModifiers())
+					&& !field.isSynthetic()) {
+				fields.add(field);
+			}
+		}
+		Class<?>[] fieldTypes = fields.stream().map(Field::getType).toArray(Class<?>[]::new);
+		for (Constructor<T> constructor : constructors) {
+			if (Arrays.equals(constructor.getParameterTypes(), fieldTypes)) {
+				return create(constructor, fields.stream().map(Field::getName).toArray(String[]::new));
+			}
+		}
+
+		Constructor<T> candidate = null;
+		for (Constructor<T> constructor : constructors) {
+			if (constructor.isAnnotationPresent(ConstructorProperties.class) && (candidate == null
+					|| constructor.getParameterCount() > candidate.getParameterCount())) {
+				candidate = constructor;
+			}
+		}
+		return candidate == null ? null : create(candidate, null);
+	}
+
+	private static <T> EntityInstantiator<T> create(Constructor<T> constructor, String[] fallbackNames) {
+		if (constructor.getParameterCount() == 0) {
+			return new NoArgInstantiator<>(constructor);
+		}
+
+		String[] names = null;
+		ConstructorProperties constructorProperties = constructor.getAnnotation(ConstructorProperties.class);
+		if (constructorProperties != null
+				&& constructorProperties.value().length == constructor.getParameterCount()) {
+			names = constructorProperties.value();
+		}
+		if (names == null) {
+			names = PARAMETER_NAME_DISCOVERER.getParameterNames(constructor);
+		}
+		if (names == null) {
+			names = fallbackNames;
+		}
+		if (names == null) {
+			LOG.debug("Cannot discover parameter names of {}", constructor);
+			return null;
+		}
+		return new ConstructorInstantiator<>(constructor, names);
+	}
+
+	private static final class NoArgInstantiator<T> implements EntityInstantiator<T> {
+
+		private final Supplier<T> supplier;
+
+		NoArgInstantiator(Constructor<T> constructor) {
+			this.supplier = createSupplier(constructor);
+		}
+
+		@SuppressWarnings("unchecked")
+		private static <T> Supplier<T> createSupplier(Constructor<T> constructor) {
+			if (PropertyValueAccessor.isGeneratable(constructor)) {
+				try {
+					MethodHandle handle = LOOKUP.unreflectConstructor(constructor);
+					CallSite callSite = LambdaMetafactory.metafactory(LOOKUP, "get",
+							MethodType.methodType(Supplier.class),
+							MethodType.methodType(Object.class),
+							handle,
+							MethodType.methodType(constructor.getDeclaringClass()));
+					return (Supplier<T>) callSite.getTarget().invokeExact();
+				}
+				catch (Throwable e) {
+					LOG.debug("Cannot generate instantiator for {}", constructor, e);
+				}
+			}
+
+			ReflectionUtils.makeAccessible(constructor);
+			return () -> {
+				try {
+					return constructor.newInstance();
+				}
+				catch (ReflectiveOperationException e) {
+					throw new MarshallingFailureException("Cannot instantiate " + constructor.getDeclaringClass(), e);
+				}
+			};
+		}
+
+		@Override
+		public T createInstance(FullEntity<?> entity) {
+			return this.supplier.get();
+		}
+
+		@Override
+		public boolean isConstructorProperty(String name) {
+			return false;
+		}
+	}
+
+	private static final class ConstructorInstantiator<T> implements EntityInstantiator<T> {
+
+		private final Class<T> type;
+		private final MethodHandle handle;
+		private final String[] names;
+		private final Object[] defaultValues;
+		private final PropertyMetadata[] parameters;
+		private final Set<String> constructorProperties;
+
+		ConstructorInstantiator(Constructor<T> constructor, String[] names) {
+			this.type = constructor.getDeclaringClass();
+			try {
+				ReflectionUtils.makeAccessible(constructor);
+				int parameterCount = constructor.getParameterCount();
+				this.handle = LOOKUP.unreflectConstructor(constructor)
+						.asType(MethodType.genericMethodType(parameterCount))
+						.asSpreader(Object[].class, parameterCount);
+			}
+			catch (IllegalAccessException e) {
+				throw new MarshallingFailureException("Cannot access " + constructor, e);
+			}
+			this.names = names;
+
+			Class<?>[] parameterTypes = constructor.getParameterTypes();
+			this.defaultValues = new Object[parameterTypes.length];
+			this.parameters = new PropertyMetadata[parameterTypes.length];
+			for (int i = 0; i < parameterTypes.length; i++) {
+				this.defaultValues[i] = Defaults.defaultValue(parameterTypes[i]);
+				this.parameters[i] = PropertyMetadata.forConstructorParameter(this.type, names[i],
+						parameterTypes[i], i);
+			}
+			this.constructorProperties = new HashSet<>(Arrays.asList(names));
+		}
+
+		@Override
+		public T createInstance(FullEntity<?> entity) {
+			// Parameters are decoded like properties, into their slot of the arguments.
+			Object[] arguments = new Object[this.names.length];
+			for (int i = 0; i < this.names.length; i++) {
+				if (entity.contains(this.names[i])) {
+					Value<?> value = entity.getValue(this.names[i]);
+					this.parameters[i].getDecoder(value.getType()).decode(value, arguments, this.parameters[i]);
+				}
+				if (arguments[i] == null) {
+					arguments[i] = this.defaultValues[i];
+				}
+			}
+
+			try {
+				return this.type.cast(this.handle.invokeExact(arguments));
+			}
+			catch (RuntimeException | Error e) {
+				throw e;
+			}
+			catch (Throwable e) {
+				throw new MarshallingFailureException("Cannot instantiate " + this.type, e);
+			}
+		}
+
+		@Override
+		public boolean isConstructorProperty(String name) {
+			return this.constructorProperties.contains(name);
+		}
+	}
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.data.gclouddatastore.repository;
+
+import com.google.cloud.datastore.FullEntity;
+import com.google.cloud.datastore.IncompleteKey;
+import com.google.cloud.datastore.Key;
+
+/**
+ * Maps a domain class to and from Datastore entities. Implementations are either
+ * generated at compile time by
+ * {@link org.springframework.data.gclouddatastore.processor.EntityMapperProcessor} or
+ * fall back to the reflective {@link Marshaller} and {@link Unmarshaller}.
+ *
+ * @see EntityMappers#getMapper(Class)
+ */
+public interface EntityMapper<T> {
+
+	FullEntity<? extends IncompleteKey> toEntity(T object, Key key);
+
+	T toObject(FullEntity<? extends IncompleteKey> entity);
+}
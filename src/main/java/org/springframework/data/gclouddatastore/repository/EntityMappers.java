@@ -0,0 +1,145 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.data.gclouddatastore.repository;
+
+import java.util.concurrent.ConcurrentMap;
+
+import com.google.cloud.datastore.Blob;
+import com.google.cloud.datastore.Entity;
+import com.google.cloud.datastore.FullEntity;
+import com.google.cloud.datastore.IncompleteKey;
+import com.google.cloud.datastore.Key;
+import com.google.cloud.datastore.Value;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.beans.BeanUtils;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ConcurrentReferenceHashMap;
+
+/**
+ * Looks up the {@link EntityMapper} of a domain class and provides the runtime support
+ * used by generated mappers for the properties they do not map inline.
+ */
+public final class EntityMappers {
+
+	private static final Logger LOG = LoggerFactory.getLogger(EntityMappers.class);
+
+	/**
+	 * Suffix of generated mapper classes, appended to the domain class name with nested
+	 * class names joined by {@code _}.
+	 */
+	public static final String MAPPER_SUFFIX = "_DatastoreMapper";
+
+	private static final ConcurrentMap<Class<?>, EntityMapper<?>> MAPPERS = new ConcurrentReferenceHashMap<>();
+
+	private EntityMappers() {
+	}
+
+	/**
+	 * Returns the generated mapper of the given domain class if present on the class
+	 * path, or a reflective mapper otherwise.
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> EntityMapper<T> getMapper(Class<T> type) {
+		EntityMapper<?> mapper = MAPPERS.get(type);
+		if (mapper == null) {
+			mapper = createMapper(type);
+			EntityMapper<?> existing = MAPPERS.putIfAbsent(type, mapper);
+			if (existing != null) {
+				mapper = existing;
+			}
+		}
+		return (EntityMapper<T>) mapper;
+	}
+
+	public static String getMapperClassName(String binaryName) {
+		int packageEnd = binaryName.lastIndexOf('.');
+		return binaryName.substring(0, packageEnd + 1)
+				+ binaryName.substring(packageEnd + 1).replace('$', '_') + MAPPER_SUFFIX;
+	}
+
+	private static <T> EntityMapper<?> createMapper(Class<T> type) {
+		String mapperClassName = getMapperClassName(type.getName());
+		if (ClassUtils.isPresent(mapperClassName, type.getClassLoader())) {
+			try {
+				Class<?> mapperClass = ClassUtils.forName(mapperClassName, type.getClassLoader());
+				if (EntityMapper.class.isAssignableFrom(mapperClass)) {
+					LOG.debug("Using generated mapper {}", mapperClassName);
+					return (EntityMapper<?>) BeanUtils.instantiateClass(mapperClass);
+				}
+			}
+			catch (ClassNotFoundException | LinkageError | RuntimeException e) {
+				LOG.warn("Cannot use generated mapper {}, falling back to reflection", mapperClassName, e);
+			}
+		}
+		return new ReflectiveEntityMapper<>(type);
+	}
+
+	public static FullEntity.Builder<? extends IncompleteKey> newBuilder(Key key) {
+		if (key == null) {
+			return Entity.newBuilder();
+		}
+		else {
+			return FullEntity.newBuilder(key);
+		}
+	}
+
+	/**
+	 * Marshals a single property value the way the reflective {@link Marshaller} does.
+	 */
+	public static Value<?> encode(Class<?> type, String name, Object value) {
+		PropertyMetadata property = EntityMetadataRegistry.getMetadata(type).getProperty(name);
+		if (property == null) {
+			return Marshaller.toDatastoreValue(value);
+		}
+		return Marshaller.toDatastoreValue(property, value);
+	}
+
+	/**
+	 * Marshals a string, excluding it from indexes if it is too long to be indexed.
+	 */
+	public static Value<?> encode(String value) {
+		return Marshaller.toStringValue(value);
+	}
+
+	/**
+	 * Marshals a byte array as an unindexed blob.
+	 */
+	public static Value<?> encode(byte[] value) {
+		return Marshaller.toBlobValue(Blob.copyFrom(value));
+	}
+
+	/**
+	 * Returns whether the given property is indexed and therefore usable in filters,
+	 * sort orders and projections.
+	 */
+	public static boolean isIndexed(Class<?> type, String name) {
+		PropertyMetadata property = EntityMetadataRegistry.getMetadata(type).getProperty(name);
+		return property == null || property.isIndexed();
+	}
+
+	/**
+	 * Unmarshals a single property value into the given object the way the reflective
+	 * {@link Unmarshaller} does.
+	 */
+	public static void decode(Class<?> type, String name, Value<?> value, Object object) {
+		PropertyMetadata property = EntityMetadataRegistry.getMetadata(type).getProperty(name);
+		if (property != null) {
+			property.getDecoder(value.getType()).decode(value, object, property);
+		}
+	}
+}
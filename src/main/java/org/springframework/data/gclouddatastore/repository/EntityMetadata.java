@@ -0,0 +1,91 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.data.gclouddatastore.repository;
+
+import java.beans.PropertyDescriptor;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.BeanUtils;
+
+/**
+ * Mapping metadata of a domain class shared by {@link Marshaller} and
+ * {@link Unmarshaller}. Instances are immutable and obtained through
+ * {@link EntityMetadataRegistry}.
+ */
+final class EntityMetadata<T> {
+
+	private final Class<T> type;
+	private final List<PropertyMetadata> properties;
+	private final List<PropertyMetadata> readableProperties;
+	private final Map<String, PropertyMetadata> propertiesByName;
+	private final EntityInstantiator<T> instantiator;
+
+	EntityMetadata(Class<T> type) {
+		this.type = type;
+		this.instantiator = EntityInstantiators.create(type);
+
+		List<PropertyMetadata> properties = new ArrayList<>();
+		List<PropertyMetadata> readableProperties = new ArrayList<>();
+		Map<String, PropertyMetadata> propertiesByName = new HashMap<>();
+		for (PropertyDescriptor propertyDescriptor : BeanUtils.getPropertyDescriptors(type)) {
+			if ("class".equals(propertyDescriptor.getName())) {
+				continue;
+			}
+
+			PropertyMetadata property = new PropertyMetadata(type, propertyDescriptor);
+			properties.add(property);
+			if (property.isReadable()) {
+				readableProperties.add(property);
+			}
+			propertiesByName.put(property.getName(), property);
+		}
+		this.properties = Collections.unmodifiableList(properties);
+		this.readableProperties = Collections.unmodifiableList(readableProperties);
+		this.propertiesByName = propertiesByName;
+	}
+
+	Class<T> getType() {
+		return this.type;
+	}
+
+	List<PropertyMetadata> getProperties() {
+		return this.properties;
+	}
+
+	List<PropertyMetadata> getReadableProperties() {
+		return this.readableProperties;
+	}
+
+	PropertyMetadata getProperty(String name) {
+		return this.propertiesByName.get(name);
+	}
+
+	boolean isInstantiable() {
+		return this.instantiator != null;
+	}
+
+	EntityInstantiator<T> getInstantiator() {
+		if (this.instantiator == null) {
+			throw new MarshallingFailureException("No usable constructor found on " + this.type);
+		}
+		return this.instantiator;
+	}
+}
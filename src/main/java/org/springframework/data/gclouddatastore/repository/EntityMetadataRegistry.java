@@ -0,0 +1,51 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.data.gclouddatastore.repository;
+
+import java.util.concurrent.ConcurrentMap;
+
+import org.springframework.util.ConcurrentReferenceHashMap;
+
+/**
+ * Process wide cache of {@link EntityMetadata}, so that bean introspection happens once
+ * per domain class rather than once per marshalled entity.
+ */
+final class EntityMetadataRegistry {
+
+	private static final ConcurrentMap<Class<?>, EntityMetadata<?>> METADATA = new ConcurrentReferenceHashMap<>();
+
+	private EntityMetadataRegistry() {
+	}
+
+	@SuppressWarnings("unchecked")
+	static <T> EntityMetadata<T> getMetadata(Class<T> type) {
+		// Not computeIfAbsent: building metadata may look up nested types.
+		EntityMetadata<?> metadata = METADATA.get(type);
+		if (metadata == null) {
+			metadata = new EntityMetadata<>(type);
+			EntityMetadata<?> existing = METADATA.putIfAbsent(type, metadata);
+			if (existing != null) {
+				metadata = existing;
+			}
+		}
+		return (EntityMetadata<T>) metadata;
+	}
+
+	static void clear() {
+		METADATA.clear();
+	}
+}
@@ -18,12 +18,19 @@ package org.springframework.data.gclouddatastore.repository;
 
 import java.io.Serializable;
 import java.lang.reflect.Method;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
 import com.google.cloud.datastore.DatastoreOptions;
 
 import org.springframework.data.gclouddatastore.repository.query.CollectionQuery;
 import org.springframework.data.gclouddatastore.repository.query.EntityQuery;
+import org.springframework.data.gclouddatastore.repository.query.GcloudDatastoreQueryMethod;
+import org.springframework.data.gclouddatastore.repository.query.KeysOnlyQuery;
+import org.springframework.data.gclouddatastore.repository.query.SliceQuery;
 import org.springframework.data.gclouddatastore.repository.query.StreamQuery;
 import org.springframework.data.projection.ProjectionFactory;
 import org.springframework.data.repository.core.EntityInformation;
@@ -42,6 +49,8 @@ public class GcloudDatastoreRepositoryFactory extends RepositoryFactorySupport {
 
 	private DatastoreOptions datastoreOptions;
 
+	private final Map<Class<?>, SimpleGcloudDatastoreRepository<?, ?>> repositories = new ConcurrentHashMap<>();
+
 	//FIXME this does not get injected Not sure why
 	public GcloudDatastoreRepositoryFactory(DatastoreOptions datastoreOptions) {
         Assert.notNull(datastoreOptions, "Data Store Options must not be null");
@@ -61,7 +70,28 @@ public class GcloudDatastoreRepositoryFactory extends RepositoryFactorySupport {
     @Override
 	protected Object getTargetRepository(RepositoryInformation information) {
 		EntityInformation<?, Serializable> entityInformation = getEntityInformation(information.getDomainType());
-		return getTargetRepositoryViaReflection(information, entityInformation,	this.datastoreOptions);
+		Object repository = getTargetRepositoryViaReflection(information, entityInformation,	this.datastoreOptions,
+				EntityMappers.getMapper(information.getDomainType()));
+		if (repository instanceof SimpleGcloudDatastoreRepository) {
+			this.repositories.put(information.getDomainType(), (SimpleGcloudDatastoreRepository<?, ?>) repository);
+		}
+		return repository;
+	}
+
+	/**
+	 * Returns the deleter of derived delete queries, going through the repository of the
+	 * domain type so that its dirty checking and maintained counts stay consistent.
+	 */
+	private Consumer<List<com.google.cloud.datastore.Key>> getDeleter(Class<?> domainType) {
+		return keys -> {
+			SimpleGcloudDatastoreRepository<?, ?> repository = this.repositories.get(domainType);
+			if (repository != null) {
+				repository.deleteByKeys(keys);
+			}
+			else {
+				this.datastoreOptions.getService().delete(keys.toArray(new com.google.cloud.datastore.Key[keys.size()]));
+			}
+		};
 	}
 
 	@Override
@@ -77,14 +107,20 @@ public class GcloudDatastoreRepositoryFactory extends RepositoryFactorySupport {
                                             RepositoryMetadata metadata,
                                             ProjectionFactory factory,
                                             NamedQueries namedQueries) {
-            QueryMethod queryMethod = new QueryMethod(method, metadata, factory);
+            QueryMethod queryMethod = new GcloudDatastoreQueryMethod(method, metadata, factory);
+            EntityMapper<?> mapper = EntityMappers.getMapper(metadata.getDomainType());
 
-            if (queryMethod.isCollectionQuery()) {
-                return new CollectionQuery(queryMethod, datastoreOptions);
+            if (KeysOnlyQuery.isKeysOnly(queryMethod, metadata.getIdType())) {
+                return new KeysOnlyQuery(queryMethod, datastoreOptions, mapper, metadata.getIdType(),
+                        getDeleter(metadata.getDomainType()));
+            } else if (queryMethod.isSliceQuery()) {
+                return new SliceQuery(queryMethod, datastoreOptions, mapper);
+            } else if (queryMethod.isCollectionQuery()) {
+                return new CollectionQuery(queryMethod, datastoreOptions, mapper);
             } else if (queryMethod.isStreamQuery()) {
-                return new StreamQuery(queryMethod, datastoreOptions);
+                return new StreamQuery(queryMethod, datastoreOptions, mapper);
             } else if (queryMethod.isQueryForEntity()) {
-                return new EntityQuery(queryMethod, datastoreOptions);
+                return new EntityQuery(queryMethod, datastoreOptions, mapper);
             } else {
                 throw new UnsupportedOperationException("Query method not supported.");
             }
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.data.gclouddatastore.repository;
+
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import com.google.cloud.datastore.Blob;
+import com.google.cloud.datastore.EntityValue;
+import com.google.cloud.datastore.FullEntity;
+import com.google.cloud.datastore.Value;
+import com.google.cloud.datastore.ValueType;
+
+/**
+ * Map view of an embedded entity that unmarshals its values on first access. Nested
+ * entities and lists become lazy in turn. An entity stored as an {@link Embedded}
+ * blob is not decoded until then either.
+ */
+final class LazyEntityMap extends AbstractMap<String, Object> implements Serializable {
+
+	// The source is guarded by this map, and dropped once the delegate is published.
+	private transient Blob blob;
+	private transient FullEntity<?> entity;
+	private transient volatile Map<String, Object> delegate;
+
+	LazyEntityMap(FullEntity<?> entity) {
+		this.entity = entity;
+	}
+
+	LazyEntityMap(Blob blob) {
+		this.blob = blob;
+	}
+
+	// Must be called holding the lock of this map.
+	private FullEntity<?> getEntity() {
+		if (this.entity == null) {
+			this.entity = ((EntityValue) EmbeddedBlobCodec.decode(this.blob)).get();
+			this.blob = null;
+		}
+		return this.entity;
+	}
+
+	/**
+	 * Returns whether the values have been unmarshalled.
+	 */
+	boolean isLoaded() {
+		return this.delegate != null;
+	}
+
+	private Map<String, Object> getDelegate() {
+		Map<String, Object> delegate = this.delegate;
+		if (delegate == null) {
+			synchronized (this) {
+				delegate = this.delegate;
+				if (delegate == null) {
+					delegate = new HashMap<>();
+					FullEntity<?> entity = getEntity();
+					for (String name : entity.getNames()) {
+						Value<?> value = entity.getValue(name);
+						if (value.getType() != ValueType.KEY) {
+							delegate.put(name, Unmarshaller.unmarshalLazily(value));
+						}
+					}
+					this.delegate = delegate;
+					this.entity = null;
+				}
+			}
+		}
+		return delegate;
+	}
+
+	@Override
+	public int size() {
+		Map<String, Object> delegate = this.delegate;
+		if (delegate != null) {
+			return delegate.size();
+		}
+		synchronized (this) {
+			if (this.delegate != null) {
+				return this.delegate.size();
+			}
+			FullEntity<?> entity = getEntity();
+			int size = 0;
+			for (String name : entity.getNames()) {
+				if (entity.getValue(name).getType() != ValueType.KEY) {
+					size++;
+				}
+			}
+			return size;
+		}
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		Map<String, Object> delegate = this.delegate;
+		if (delegate != null) {
+			return delegate.containsKey(key);
+		}
+		synchronized (this) {
+			if (this.delegate != null) {
+				return this.delegate.containsKey(key);
+			}
+			FullEntity<?> entity = getEntity();
+			return key instanceof String && entity.contains((String) key)
+					&& entity.getValue((String) key).getType() != ValueType.KEY;
+		}
+	}
+
+	@Override
+	public Object get(Object key) {
+		return getDelegate().get(key);
+	}
+
+	@Override
+	public Object put(String key, Object value) {
+		return getDelegate().put(key, value);
+	}
+
+	@Override
+	public Object remove(Object key) {
+		return getDelegate().remove(key);
+	}
+
+	@Override
+	public void clear() {
+		getDelegate().clear();
+	}
+
+	@Override
+	public Set<Entry<String, Object>> entrySet() {
+		return getDelegate().entrySet();
+	}
+
+	private Object writeReplace() {
+		return new HashMap<>(getDelegate());
+	}
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.data.gclouddatastore.repository;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Unmarshals embedded entities and lists of a property into a {@link java.util.Map} or
+ * {@link java.util.List} that is only materialized on first access, level by level.
+ * Applies to properties declared as {@code Map}, {@code List}, {@code Collection} or
+ * {@code Object}; other properties are always unmarshalled eagerly. On a class it is
+ * the default for all its properties.
+ */
+@Target({ ElementType.TYPE, ElementType.FIELD, ElementType.METHOD })
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface LazyLoading {
+
+	/**
+	 * Whether to unmarshal lazily, {@code false} to opt a property out of the class
+	 * default.
+	 */
+	boolean value() default true;
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.data.gclouddatastore.repository;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.RandomAccess;
+
+import com.google.cloud.datastore.Value;
+
+/**
+ * List view of a list value that unmarshals its elements on first access. Nested
+ * entities and lists become lazy in turn.
+ */
+final class LazyValueList extends AbstractList<Object> implements RandomAccess, Serializable {
+
+	// The values are guarded by this list, and dropped once the delegate is published.
+	private transient List<? extends Value<?>> values;
+	private transient volatile List<Object> delegate;
+
+	LazyValueList(List<? extends Value<?>> values) {
+		this.values = values;
+	}
+
+	/**
+	 * Returns whether the values have been unmarshalled.
+	 */
+	boolean isLoaded() {
+		return this.delegate != null;
+	}
+
+	private List<Object> getDelegate() {
+		List<Object> delegate = this.delegate;
+		if (delegate == null) {
+			synchronized (this) {
+				delegate = this.delegate;
+				if (delegate == null) {
+					delegate = new ArrayList<>(this.values.size());
+					for (Value<?> value : this.values) {
+						delegate.add(Unmarshaller.unmarshalLazily(value));
+					}
+					this.delegate = delegate;
+					this.values = null;
+				}
+			}
+		}
+		return delegate;
+	}
+
+	@Override
+	public int size() {
+		List<Object> delegate = this.delegate;
+		if (delegate != null) {
+			return delegate.size();
+		}
+		synchronized (this) {
+			return this.delegate != null ? this.delegate.size() : this.values.size();
+		}
+	}
+
+	@Override
+	public Object get(int index) {
+		return getDelegate().get(index);
+	}
+
+	@Override
+	public Object set(int index, Object element) {
+		return getDelegate().set(index, element);
+	}
+
+	@Override
+	public void add(int index, Object element) {
+		getDelegate().add(index, element);
+	}
+
+	@Override
+	public Object remove(int index) {
+		return getDelegate().remove(index);
+	}
+
+	@Override
+	public void clear() {
+		getDelegate().clear();
+	}
+
+	@Override
+	public Iterator<Object> iterator() {
+		return getDelegate().iterator();
+	}
+
+	private Object writeReplace() {
+		return new ArrayList<>(getDelegate());
+	}
+}
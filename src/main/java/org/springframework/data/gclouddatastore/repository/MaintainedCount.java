@@ -0,0 +1,45 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.data.gclouddatastore.repository;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Makes the repository of the annotated domain class cache the result of
+ * {@code count()} per {@link Context} ancestor path, instead of iterating every key of
+ * the kind on each call. The cache is a best-effort one, kept by each repository
+ * instance in its own process: saves and deletes through the repository drop the
+ * counts they touch, and all counts are dropped once a transaction the repository took
+ * part in completes. Writes made elsewhere, including other processes, are only seen
+ * once the cached count expires after {@link #reconcileSeconds()} and the next call
+ * counts the keys again. Meant for kinds that are counted far more often than they are
+ * written.
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface MaintainedCount {
+
+	/**
+	 * How long a count is served from the cache before the keys are counted again.
+	 */
+	long reconcileSeconds() default 600;
+}
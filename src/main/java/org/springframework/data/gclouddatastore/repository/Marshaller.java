@@ -16,11 +16,14 @@
 
 package org.springframework.data.gclouddatastore.repository;
 
-import java.beans.PropertyDescriptor;
+import java.io.InputStream;
 import java.net.URI;
 import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.time.OffsetDateTime;
-import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.List;
@@ -42,18 +45,21 @@ import com.google.cloud.datastore.NullValue;
 import com.google.cloud.datastore.StringValue;
 import com.google.cloud.datastore.TimestampValue;
 import com.google.cloud.datastore.Value;
+import com.google.cloud.datastore.ValueBuilder;
+import com.google.common.base.Utf8;
+import com.google.protobuf.ByteString;
 
-import org.springframework.beans.BeanWrapper;
-import org.springframework.beans.PropertyAccessorFactory;
 
 class Marshaller {
 
-	private static Value<?> toDatastoreValue(Object value) {
+	private static final int MAX_INDEXED_BYTES = 1500;
+
+	static Value<?> toDatastoreValue(Object value) {
 		if (value == null) {
 			return NullValue.of();
 		}
 		else if (value instanceof String || value instanceof URI) {
-			return StringValue.of(value.toString());
+			return toStringValue(value.toString());
 		}
 		else if (value instanceof Boolean) {
 			return BooleanValue.of((Boolean) value);
@@ -70,11 +76,23 @@ class Marshaller {
 		else if (value instanceof Long) {
 			return LongValue.of((Long) value);
 		}
+		else if (ArrayValues.isSupported(value.getClass())) {
+			return ArrayValues.toListValue(value);
+		}
 		else if (value instanceof byte[]) {
-			return BlobValue.of(Blob.copyFrom((byte[]) value));
+			return toBlobValue(Blob.copyFrom((byte[]) value));
 		}
 		else if (value instanceof ByteBuffer) {
-			return BlobValue.of(Blob.copyFrom((ByteBuffer) value));
+			return toBlobValue(Blobs.wrap((ByteBuffer) value));
+		}
+		else if (value instanceof Blob) {
+			return toBlobValue((Blob) value);
+		}
+		else if (value instanceof ByteString) {
+			return toBlobValue(Blobs.wrap((ByteString) value));
+		}
+		else if (value instanceof InputStream) {
+			return toBlobValue(Blobs.read((InputStream) value));
 		}
         else if (value instanceof java.sql.Timestamp) {
             return TimestampValue.of(Timestamp.of((java.sql.Timestamp) value));
@@ -87,14 +105,22 @@ class Marshaller {
 					.of(Timestamp.fromProto((com.google.protobuf.Timestamp) value));
 		}
 		else if (value instanceof Calendar) {
-			String rfc3339 = OffsetDateTime
-					.ofInstant(((Calendar) value).toInstant(), ZoneOffset.UTC).toString();
-			return TimestampValue.of(Timestamp.parseTimestamp(rfc3339));
+			return TimestampValue.of(Timestamps.of((Calendar) value));
+		}
+		else if (value instanceof Instant) {
+			return TimestampValue.of(Timestamps.of((Instant) value));
 		}
 		else if (value instanceof OffsetDateTime) {
-			String rfc3339 = ((OffsetDateTime) value)
-					.withOffsetSameInstant(ZoneOffset.UTC).toString();
-			return TimestampValue.of(Timestamp.parseTimestamp(rfc3339));
+			return TimestampValue.of(Timestamps.of((OffsetDateTime) value));
+		}
+		else if (value instanceof ZonedDateTime) {
+			return TimestampValue.of(Timestamps.of((ZonedDateTime) value));
+		}
+		else if (value instanceof LocalDateTime) {
+			return TimestampValue.of(Timestamps.of((LocalDateTime) value));
+		}
+		else if (value instanceof LocalDate) {
+			return TimestampValue.of(Timestamps.of((LocalDate) value));
 		}
 		else if (value instanceof Map) {
 			return EntityValue.of(toEntity(value, null));
@@ -111,6 +137,63 @@ class Marshaller {
 		}
 	}
 
+	static Value<?> toDatastoreValue(PropertyMetadata property, Object value) {
+		if (property.isEmbeddedBlob() && value != null) {
+			return toBlobValue(EmbeddedBlobCodec.encode(toDatastoreValue(value)));
+		}
+
+		Value<?> datastoreValue = null;
+		if (property.getCompressed() != null) {
+			datastoreValue = Compression.compress(value, property.getCompressed());
+		}
+		if (datastoreValue == null) {
+			datastoreValue = toDatastoreValue(value);
+		}
+		return property.isIndexed() ? datastoreValue : excludeFromIndexes(datastoreValue);
+	}
+
+	static StringValue toStringValue(String value) {
+		if (isIndexable(value)) {
+			return StringValue.of(value);
+		}
+		return StringValue.newBuilder(value).setExcludeFromIndexes(true).build();
+	}
+
+	static boolean isIndexable(String value) {
+		// Every char takes at least one byte and at most three in UTF-8.
+		return value.length() * 3 <= MAX_INDEXED_BYTES || (value.length() <= MAX_INDEXED_BYTES
+				&& Utf8.encodedLength(value) <= MAX_INDEXED_BYTES);
+	}
+
+	static BlobValue toBlobValue(Blob value) {
+		return BlobValue.newBuilder(value).setExcludeFromIndexes(true).build();
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	static Value<?> excludeFromIndexes(Value<?> value) {
+		switch (value.getType()) {
+		case LIST:
+			// Datastore rejects list values that are excluded as a whole.
+			ListValue.Builder listBuilder = ListValue.newBuilder();
+			for (Value<?> element : ((ListValue) value).get()) {
+				listBuilder.addValue(excludeFromIndexes(element));
+			}
+			return listBuilder.build();
+		case ENTITY:
+			FullEntity<?> entity = ((EntityValue) value).get();
+			FullEntity.Builder<?> entityBuilder = FullEntity.newBuilder(entity);
+			for (String name : entity.getNames()) {
+				entityBuilder.set(name, excludeFromIndexes(entity.getValue(name)));
+			}
+			return EntityValue.newBuilder(entityBuilder.build()).setExcludeFromIndexes(true).build();
+		default:
+			if (value.excludeFromIndexes()) {
+				return value;
+			}
+			return ((ValueBuilder) value.toBuilder()).setExcludeFromIndexes(true).build();
+		}
+	}
+
 	@SuppressWarnings("unchecked")
 	static FullEntity<? extends IncompleteKey> toEntity(Object object, Key key) {
 		FullEntity.Builder<? extends IncompleteKey> builder;
@@ -131,14 +214,9 @@ class Marshaller {
 			}
 		}
 		else {
-			BeanWrapper beanWrapper = PropertyAccessorFactory.forBeanPropertyAccess(object);
-			for (PropertyDescriptor propertyDescriptor : beanWrapper.getPropertyDescriptors()) {
-				String name = propertyDescriptor.getName();
-				if ("class".equals(name)) {
-                    continue;
-                }
-
-				setEntityValue(builder, name, beanWrapper.getPropertyValue(name));
+			EntityMetadata<?> metadata = EntityMetadataRegistry.getMetadata(object.getClass());
+			for (PropertyMetadata property : metadata.getReadableProperties()) {
+				builder.set(property.getName(), toDatastoreValue(property, property.getValue(object)));
 			}
 		}
 		return builder.build();
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.data.gclouddatastore.repository;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import com.google.cloud.datastore.Key;
+import com.google.cloud.datastore.KeyQuery;
+import com.google.cloud.datastore.QueryResults;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+
+/**
+ * Computes the totals of pages with a keys-only count query, which runs while the
+ * content of the page is read. The count is abandoned when the page turns out to be the
+ * last one, whose content gives the total. Totals are cached per count query, that is
+ * per kind, ancestor and filter, for a few seconds.
+ */
+final class PageTotals {
+
+	private static final long TTL_SECONDS = 5;
+
+	private static final int MAX_CACHED_TOTALS = 1000;
+
+	private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(
+			new ThreadFactoryBuilder().setDaemon(true).setNameFormat("datastore-page-total-%d").build());
+
+	private final Cache<KeyQuery, Long> totals = CacheBuilder.newBuilder()
+			.expireAfterWrite(TTL_SECONDS, TimeUnit.SECONDS)
+			.maximumSize(MAX_CACHED_TOTALS)
+			.build();
+
+	private final Executor executor;
+
+	PageTotals() {
+		this(EXECUTOR);
+	}
+
+	PageTotals(Executor executor) {
+		this.executor = executor;
+	}
+
+	/**
+	 * Reads the content of the page, counting the results of the count query at the same
+	 * time unless its total is cached.
+	 */
+	<T> Page<T> getPage(Pageable pageable, Supplier<Slice<T>> content, KeyQuery countQuery,
+			Function<KeyQuery, QueryResults<Key>> runner) {
+
+		Long cached = this.totals.getIfPresent(countQuery);
+		AtomicBoolean abandoned = new AtomicBoolean();
+		CompletableFuture<Long> count = cached != null ? CompletableFuture.completedFuture(cached)
+				: CompletableFuture.supplyAsync(() -> count(runner.apply(countQuery), abandoned), this.executor);
+
+		Slice<T> slice;
+		try {
+			slice = content.get();
+		}
+		catch (RuntimeException | Error e) {
+			abandoned.set(true);
+			throw e;
+		}
+
+		long total;
+		// A page past the end is empty, and does not tell the total.
+		if (!slice.hasNext() && (slice.hasContent() || pageable.getOffset() == 0)) {
+			abandoned.set(true);
+			total = pageable.getOffset() + slice.getNumberOfElements();
+		}
+		else {
+			total = join(count);
+		}
+		this.totals.put(countQuery, total);
+		return new PageImpl<>(slice.getContent(), slice.getPageable(), total);
+	}
+
+	/**
+	 * Forgets the cached totals, after entities have been written or deleted.
+	 */
+	void clear() {
+		this.totals.invalidateAll();
+	}
+
+	private static long count(QueryResults<Key> results, AtomicBoolean abandoned) {
+		long count = 0;
+		while (!abandoned.get() && results.hasNext()) {
+			results.next();
+			count++;
+		}
+		return count;
+	}
+
+	private static long join(CompletableFuture<Long> count) {
+		try {
+			return count.join();
+		}
+		catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw e;
+		}
+	}
+}
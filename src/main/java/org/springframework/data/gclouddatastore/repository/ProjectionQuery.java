@@ -0,0 +1,40 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.data.gclouddatastore.repository;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Runs a derived query method returning a closed interface or DTO projection as a
+ * Datastore projection query, which reads only the projected properties from the
+ * indexes. Without it the whole entities are read and projected in memory.
+ * <p>
+ * A projection query with a filter or sort order, or on more than one property, needs a
+ * composite index on the filtered, sorted and projected properties. It only returns
+ * entities that have all projected properties set and indexed, and one result per value
+ * of a list property. Methods whose projection cannot be read from the indexes, such as
+ * one on an unindexed or non-scalar property, fall back to reading the whole entities.
+ */
+@Target({ ElementType.METHOD, ElementType.ANNOTATION_TYPE })
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface ProjectionQuery {
+}
@@ -0,0 +1,477 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.data.gclouddatastore.repository;
+
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.cloud.datastore.Blob;
+import com.google.cloud.datastore.BlobValue;
+import com.google.cloud.datastore.EntityValue;
+import com.google.cloud.datastore.LatLng;
+import com.google.cloud.datastore.ListValue;
+import com.google.cloud.datastore.StringValue;
+import com.google.cloud.datastore.TimestampValue;
+import com.google.cloud.datastore.Value;
+import com.google.cloud.datastore.ValueType;
+import com.google.common.primitives.Primitives;
+import com.google.protobuf.ByteString;
+
+/**
+ * Resolves the {@link ValueReader} and {@link PropertyDecoder} for each
+ * ({@link ValueType}, property type) pair once, when the {@link PropertyMetadata} of a
+ * domain class is built, so that decoding a property is a single call instead of a
+ * chain of {@code isAssignableFrom} checks.
+ */
+final class PropertyDecoders {
+
+	private static final Class<?>[] LONG_TARGETS = { Long.class, Integer.class,
+			Short.class, Byte.class, Double.class, Float.class };
+
+	private static final Class<?>[] DOUBLE_TARGETS = { Double.class, Float.class,
+			Long.class, Integer.class, Short.class, Byte.class };
+
+	private PropertyDecoders() {
+	}
+
+	static Map<ValueType, PropertyDecoder> resolve(Class<?> type, boolean writable, boolean lazy) {
+		Map<ValueType, PropertyDecoder> decoders = new EnumMap<>(ValueType.class);
+		for (ValueType valueType : ValueType.values()) {
+			decoders.put(valueType, resolve(valueType, type, writable, lazy));
+		}
+		return decoders;
+	}
+
+	static PropertyDecoder resolve(ValueType valueType, Class<?> type, boolean writable, boolean lazy) {
+		if (valueType == ValueType.ENTITY && !type.isAssignableFrom(Map.class)) {
+			// Embedded maps and beans are read into the current property value if any.
+			return entityDecoder(type, writable);
+		}
+		else if (valueType == ValueType.LIST && !type.isAssignableFrom(List.class)
+				&& List.class.isAssignableFrom(type)) {
+			return listDecoder(type, writable);
+		}
+		else if (!writable) {
+			return PropertyDecoder.NONE;
+		}
+
+		ValueReader lazyReader = lazy ? lazyReader(valueType, type) : null;
+		ValueReader reader = lazyReader != null ? lazyReader : resolveReader(valueType, type);
+		if (reader == null) {
+			return PropertyDecoder.NONE;
+		}
+		else if (ValueConverters.getConverter(valueType, type) == null) {
+			PropertyDecoder decoder = primitiveDecoder(valueType, type);
+			if (decoder != null) {
+				return decoder;
+			}
+		}
+		return (value, bean, property) -> property.setValue(bean, reader.read(value));
+	}
+
+	static PropertyDecoder resolveCompressed(Class<?> type, boolean writable) {
+		ValueReader reader = resolveCompressedReader(type);
+		if (!writable || reader == null) {
+			return PropertyDecoder.NONE;
+		}
+		return (value, bean, property) -> property.setValue(bean, reader.read(value));
+	}
+
+	/**
+	 * Decodes an {@link Embedded.Storage#BLOB} value with the decoder of the value type
+	 * it was encoded from. {@code Map} properties get a {@link LazyEntityMap} that decodes
+	 * the blob on first access instead. Blobs written before the property was annotated
+	 * are left to {@code blobDecoder}.
+	 */
+	static PropertyDecoder resolveEmbeddedBlob(Class<?> type, boolean writable, PropertyDecoder blobDecoder) {
+		boolean lazyMap = writable && type.isAssignableFrom(Map.class);
+		return (value, bean, property) -> {
+			Blob blob = ((BlobValue) value).get();
+			if (!EmbeddedBlobCodec.isEncoded(blob)) {
+				blobDecoder.decode(value, bean, property);
+			}
+			else if (lazyMap) {
+				property.setValue(bean, new LazyEntityMap(blob));
+			}
+			else {
+				Value<?> decoded = EmbeddedBlobCodec.decode(blob);
+				PropertyDecoder decoder = decoded.getType() == ValueType.BLOB
+						? blobDecoder : property.getDecoder(decoded.getType());
+				decoder.decode(decoded, bean, property);
+			}
+		};
+	}
+
+	static ValueReader resolveInternedReader(Class<?> type, Interned interned) {
+		if (!type.isAssignableFrom(String.class)) {
+			return null;
+		}
+		StringPool pool = new StringPool(interned.poolSize());
+		return value -> pool.intern(((StringValue) value).get());
+	}
+
+	private static ValueReader resolveCompressedReader(Class<?> type) {
+		if (type.isAssignableFrom(String.class)) {
+			return value -> new String(Compression.decompress((BlobValue) value), StandardCharsets.UTF_8);
+		}
+		else if (type.isAssignableFrom(byte[].class)) {
+			return value -> Compression.decompress((BlobValue) value);
+		}
+		return resolveReader(ValueType.BLOB, type);
+	}
+
+	static ValueReader resolveReader(ValueType valueType, Class<?> type) {
+		ValueConverter<?> converter = ValueConverters.getConverter(valueType, type);
+		if (converter != null) {
+			return converter::convert;
+		}
+
+		switch (valueType) {
+		case BLOB:
+			return blobReader(type);
+		case BOOLEAN:
+			return isAssignable(type, Boolean.class) ? value -> value.get() : null;
+		case DOUBLE:
+			return numberReader(type, Double.class, DOUBLE_TARGETS);
+		case LONG:
+			return numberReader(type, Long.class, LONG_TARGETS);
+		case STRING:
+			return stringReader(type);
+		case ENTITY:
+			return entityReader(type);
+		case LAT_LNG:
+			return latLngReader(type);
+		case LIST:
+			return listReader(type);
+		case NULL:
+			return type.isPrimitive() ? null : value -> null;
+		case TIMESTAMP:
+			return timestampReader(type);
+		case KEY:
+		case RAW_VALUE:
+		default:
+			return null;
+		}
+	}
+
+	private static ValueReader lazyReader(ValueType valueType, Class<?> type) {
+		if (ValueConverters.getConverter(valueType, type) != null) {
+			return null;
+		}
+		else if (valueType == ValueType.ENTITY && type.isAssignableFrom(Map.class)) {
+			return value -> new LazyEntityMap(((EntityValue) value).get());
+		}
+		else if (valueType == ValueType.LIST && type.isAssignableFrom(List.class)) {
+			return value -> new LazyValueList(((ListValue) value).get());
+		}
+		return null;
+	}
+
+	private static boolean isAssignable(Class<?> type, Class<?> boxedType) {
+		return type.isAssignableFrom(boxedType)
+				|| type.isAssignableFrom(Primitives.unwrap(boxedType));
+	}
+
+	private static PropertyDecoder primitiveDecoder(ValueType valueType, Class<?> type) {
+		switch (valueType) {
+		case LONG:
+		case DOUBLE:
+			if (type == long.class) {
+				return (value, bean, property) -> property.setLong(bean, ((Number) value.get()).longValue());
+			}
+			else if (type == int.class) {
+				return (value, bean, property) -> property.setInt(bean, ((Number) value.get()).intValue());
+			}
+			else if (type == double.class) {
+				return (value, bean, property) -> property.setDouble(bean, ((Number) value.get()).doubleValue());
+			}
+			return null;
+		case STRING:
+			if (type == long.class) {
+				return (value, bean, property) -> property.setLong(bean,
+						Long.decode(((StringValue) value).get()));
+			}
+			else if (type == int.class) {
+				return (value, bean, property) -> property.setInt(bean,
+						Integer.decode(((StringValue) value).get()));
+			}
+			else if (type == double.class) {
+				return (value, bean, property) -> property.setDouble(bean,
+						Double.parseDouble(((StringValue) value).get()));
+			}
+			return null;
+		case TIMESTAMP:
+			if (type == long.class) {
+				return (value, bean, property) -> property.setLong(bean,
+						((TimestampValue) value).get().getSeconds());
+			}
+			return null;
+		default:
+			return null;
+		}
+	}
+
+	private static ValueReader blobReader(Class<?> type) {
+		if (type.isAssignableFrom(byte[].class)) {
+			return value -> ((BlobValue) value).get().toByteArray();
+		}
+		else if (type.isAssignableFrom(String.class)) {
+			return value -> new String(((BlobValue) value).get().toByteArray(), StandardCharsets.UTF_8);
+		}
+		// The types below share the blob's bytes instead of copying them.
+		else if (type == Blob.class) {
+			return value -> value.get();
+		}
+		else if (type == ByteString.class) {
+			return value -> Blobs.toByteString(((BlobValue) value).get());
+		}
+		else if (type.isAssignableFrom(ByteBuffer.class)) {
+			return value -> ((BlobValue) value).get().asReadOnlyByteBuffer();
+		}
+		else if (type.isAssignableFrom(InputStream.class)) {
+			return value -> Blobs.newInputStream(((BlobValue) value).get());
+		}
+		return null;
+	}
+
+	private static ValueReader numberReader(Class<?> type, Class<?> sourceType,
+			Class<?>[] targetTypes) {
+
+		for (Class<?> targetType : targetTypes) {
+			if (isAssignable(type, targetType)) {
+				if (targetType == sourceType) {
+					return value -> value.get();
+				}
+				else if (targetType == Long.class) {
+					return value -> ((Number) value.get()).longValue();
+				}
+				else if (targetType == Integer.class) {
+					return value -> ((Number) value.get()).intValue();
+				}
+				else if (targetType == Short.class) {
+					return value -> ((Number) value.get()).shortValue();
+				}
+				else if (targetType == Byte.class) {
+					return value -> ((Number) value.get()).byteValue();
+				}
+				else if (targetType == Double.class) {
+					return value -> ((Number) value.get()).doubleValue();
+				}
+				else {
+					return value -> ((Number) value.get()).floatValue();
+				}
+			}
+		}
+		return null;
+	}
+
+	private static ValueReader stringReader(Class<?> type) {
+		if (type.isAssignableFrom(String.class)) {
+			return value -> value.get();
+		}
+		else if (type.isAssignableFrom(byte[].class)) {
+			return value -> ((StringValue) value).get().getBytes(StandardCharsets.UTF_8);
+		}
+		else if (isAssignable(type, Long.class)) {
+			return value -> Long.decode(((StringValue) value).get());
+		}
+		else if (isAssignable(type, Integer.class)) {
+			return value -> Integer.decode(((StringValue) value).get());
+		}
+		else if (isAssignable(type, Short.class)) {
+			return value -> Short.decode(((StringValue) value).get());
+		}
+		else if (isAssignable(type, Byte.class)) {
+			return value -> Byte.decode(((StringValue) value).get());
+		}
+		else if (isAssignable(type, Double.class)) {
+			return value -> Double.valueOf(((StringValue) value).get());
+		}
+		else if (isAssignable(type, Float.class)) {
+			return value -> Float.valueOf(((StringValue) value).get());
+		}
+		else if (type.isAssignableFrom(URI.class)) {
+			return value -> {
+				try {
+					return new URI(((StringValue) value).get());
+				}
+				catch (URISyntaxException e) {
+					return null;
+				}
+			};
+		}
+		return null;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static ValueReader entityReader(Class<?> type) {
+		if (type.isAssignableFrom(Map.class)) {
+			return value -> Unmarshaller.unmarshal(value);
+		}
+		else if (Map.class.isAssignableFrom(type)) {
+			return value -> {
+				try {
+					Map<String, Object> map = (Map<String, Object>) type.getConstructor().newInstance();
+					Unmarshaller.unmarshalToMap(((EntityValue) value).get(), map);
+					return map;
+				}
+				catch (ReflectiveOperationException e) {
+					throw new MarshallingFailureException("Cannot instantiate " + type, e);
+				}
+			};
+		}
+		else {
+			return value -> Unmarshaller.unmarshal(((EntityValue) value).get(), type);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static PropertyDecoder entityDecoder(Class<?> type, boolean writable) {
+		if (Map.class.isAssignableFrom(type)) {
+			return (value, bean, property) -> {
+				Map<String, Object> map = (Map<String, Object>) property.getValue(bean);
+				if (map != null) {
+					Unmarshaller.unmarshalToMap(((EntityValue) value).get(), map);
+				}
+				else if (writable) {
+					try {
+						map = (Map<String, Object>) type.getConstructor().newInstance();
+					}
+					catch (ReflectiveOperationException e) {
+						return;
+					}
+					Unmarshaller.unmarshalToMap(((EntityValue) value).get(), map);
+					property.setValue(bean, map);
+				}
+			};
+		}
+		else {
+			return (value, bean, property) -> {
+				Object targetObject = property.getValue(bean);
+				if (targetObject != null) {
+					Unmarshaller.unmarshalToObject(((EntityValue) value).get(), targetObject);
+				}
+				else if (writable && EntityMetadataRegistry.getMetadata(type).isInstantiable()) {
+					property.setValue(bean, Unmarshaller.unmarshal(((EntityValue) value).get(), type));
+				}
+			};
+		}
+	}
+
+	private static ValueReader latLngReader(Class<?> type) {
+		if (type.isAssignableFrom(LatLng.class)) {
+			return value -> value.get();
+		}
+		else if (type.isAssignableFrom(com.google.type.LatLng.class)) {
+			return value -> {
+				LatLng latLng = (LatLng) value.get();
+				return com.google.type.LatLng.newBuilder()
+						.setLatitude(latLng.getLatitude())
+						.setLongitude(latLng.getLongitude()).build();
+			};
+		}
+		return null;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static ValueReader listReader(Class<?> type) {
+		if (ArrayValues.isSupported(type)) {
+			return ArrayValues.reader(type);
+		}
+		else if (type.isAssignableFrom(List.class)) {
+			return value -> Unmarshaller.unmarshal(value);
+		}
+		else if (List.class.isAssignableFrom(type)) {
+			return value -> {
+				try {
+					List<Object> list = (List<Object>) type.getConstructor().newInstance();
+					list.addAll((List<Object>) Unmarshaller.unmarshal(value));
+					return list;
+				}
+				catch (ReflectiveOperationException e) {
+					throw new MarshallingFailureException("Cannot instantiate " + type, e);
+				}
+			};
+		}
+		return null;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static PropertyDecoder listDecoder(Class<?> type, boolean writable) {
+		return (value, bean, property) -> {
+			List<Object> list = (List<Object>) property.getValue(bean);
+			if (list == null && writable) {
+				try {
+					list = (List<Object>) type.getConstructor().newInstance();
+				}
+				catch (ReflectiveOperationException e) {
+					return;
+				}
+				list.addAll((List<Object>) Unmarshaller.unmarshal(value));
+				property.setValue(bean, list);
+			}
+			else if (list != null) {
+				list.clear();
+				list.addAll((List<Object>) Unmarshaller.unmarshal(value));
+			}
+		};
+	}
+
+	private static ValueReader timestampReader(Class<?> type) {
+		if (type.isAssignableFrom(Instant.class)) {
+			return value -> Timestamps.toInstant(((TimestampValue) value).get());
+		}
+		else if (type.isAssignableFrom(Date.class)) {
+			return value -> Timestamps.toDate(((TimestampValue) value).get());
+		}
+		else if (type.isAssignableFrom(Calendar.class)) {
+			return value -> Timestamps.toCalendar(((TimestampValue) value).get());
+		}
+		else if (type.isAssignableFrom(java.sql.Timestamp.class)) {
+			return value -> ((TimestampValue) value).get().toSqlTimestamp();
+		}
+		else if (type.isAssignableFrom(LocalDateTime.class)) {
+			return value -> Timestamps.toLocalDateTime(((TimestampValue) value).get());
+		}
+		else if (type.isAssignableFrom(LocalDate.class)) {
+			return value -> Timestamps.toLocalDate(((TimestampValue) value).get());
+		}
+		else if (type.isAssignableFrom(OffsetDateTime.class)) {
+			return value -> Timestamps.toInstant(((TimestampValue) value).get()).atOffset(ZoneOffset.UTC);
+		}
+		else if (type.isAssignableFrom(ZonedDateTime.class)) {
+			return value -> Timestamps.toInstant(((TimestampValue) value).get()).atZone(ZoneOffset.UTC);
+		}
+		else if (isAssignable(type, Long.class)) {
+			return value -> ((TimestampValue) value).get().getSeconds();
+		}
+		return null;
+	}
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.data.gclouddatastore.repository;
+
+import java.beans.PropertyDescriptor;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.AnnotatedElement;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.Map;
+
+import com.google.cloud.datastore.ValueType;
+
+import org.springframework.beans.BeanUtils;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.util.ReflectionUtils;
+
+/**
+ * Mapping metadata of a single bean property, resolved once per domain class.
+ */
+final class PropertyMetadata {
+
+	private final Class<?> beanClass;
+	private final String name;
+	private final Class<?> type;
+	private final Method readMethod;
+	private final Method writeMethod;
+	private final Field field;
+	private final boolean writable;
+	private final boolean indexed;
+	private final Compressed compressed;
+	private final boolean embeddedBlob;
+	private final PropertyValueAccessor accessor;
+	private final Map<ValueType, PropertyDecoder> decoders;
+
+	PropertyMetadata(Class<?> beanClass, PropertyDescriptor propertyDescriptor) {
+		this(beanClass, propertyDescriptor.getName(), propertyDescriptor.getPropertyType(),
+				propertyDescriptor.getReadMethod(), propertyDescriptor.getWriteMethod(),
+				PropertyValueAccessor.create(propertyDescriptor.getName(), propertyDescriptor.getReadMethod(),
+						propertyDescriptor.getWriteMethod()),
+				propertyDescriptor.getWriteMethod() != null);
+	}
+
+	private PropertyMetadata(Class<?> beanClass, String name, Class<?> type, Method readMethod,
+			Method writeMethod, PropertyValueAccessor accessor, boolean writable) {
+		this.beanClass = beanClass;
+		this.name = name;
+		this.type = type;
+		this.readMethod = readMethod;
+		this.writeMethod = writeMethod;
+		this.field = ReflectionUtils.findField(beanClass, this.name);
+		this.accessor = accessor;
+		this.writable = writable;
+
+		Unindexed unindexed = findAnnotation(Unindexed.class);
+		this.indexed = unindexed == null || !unindexed.value();
+
+		this.compressed = findAnnotation(Compressed.class);
+
+		Embedded embedded = findAnnotation(Embedded.class);
+		this.embeddedBlob = embedded != null && embedded.storage() == Embedded.Storage.BLOB;
+
+		LazyLoading lazyLoading = findAnnotation(LazyLoading.class);
+		Map<ValueType, PropertyDecoder> decoders = PropertyDecoders.resolve(this.type, isWritable(),
+				lazyLoading != null && lazyLoading.value());
+		if (this.compressed != null) {
+			decoders.put(ValueType.BLOB, PropertyDecoders.resolveCompressed(this.type, isWritable()));
+		}
+		Interned interned = findAnnotation(Interned.class);
+		if (interned != null && interned.value()) {
+			ValueReader reader = PropertyDecoders.resolveInternedReader(this.type, interned);
+			if (reader != null && isWritable()) {
+				decoders.put(ValueType.STRING,
+						(value, bean, property) -> property.setValue(bean, reader.read(value)));
+			}
+		}
+		if (this.embeddedBlob) {
+			decoders.put(ValueType.BLOB, PropertyDecoders.resolveEmbeddedBlob(this.type, isWritable(),
+					decoders.get(ValueType.BLOB)));
+		}
+		this.decoders = decoders;
+	}
+
+	/**
+	 * Returns the metadata of a constructor parameter bound to the property of the given
+	 * name, with the annotations of that property, whose decoders write the parameter
+	 * into its slot of an array of constructor arguments.
+	 */
+	static PropertyMetadata forConstructorParameter(Class<?> beanClass, String name, Class<?> type, int index) {
+		PropertyDescriptor propertyDescriptor = BeanUtils.getPropertyDescriptor(beanClass, name);
+		return new PropertyMetadata(beanClass, name, type,
+				propertyDescriptor != null ? propertyDescriptor.getReadMethod() : null,
+				propertyDescriptor != null ? propertyDescriptor.getWriteMethod() : null,
+				PropertyValueAccessor.forArrayElement(index), true);
+	}
+
+	String getName() {
+		return this.name;
+	}
+
+	Class<?> getType() {
+		return this.type;
+	}
+
+	Method getReadMethod() {
+		return this.readMethod;
+	}
+
+	Method getWriteMethod() {
+		return this.writeMethod;
+	}
+
+	boolean isReadable() {
+		return this.readMethod != null;
+	}
+
+	boolean isWritable() {
+		return this.writable;
+	}
+
+	boolean isIndexed() {
+		return this.indexed;
+	}
+
+	Compressed getCompressed() {
+		return this.compressed;
+	}
+
+	boolean isEmbeddedBlob() {
+		return this.embeddedBlob;
+	}
+
+	Object getValue(Object bean) {
+		return this.accessor.getValue(bean);
+	}
+
+	void setValue(Object bean, Object value) {
+		this.accessor.setValue(bean, value);
+	}
+
+	void setLong(Object bean, long value) {
+		this.accessor.setLong(bean, value);
+	}
+
+	void setInt(Object bean, int value) {
+		this.accessor.setInt(bean, value);
+	}
+
+	void setDouble(Object bean, double value) {
+		this.accessor.setDouble(bean, value);
+	}
+
+	/**
+	 * Finds an annotation on the getter, the setter or the field of this property, or
+	 * else on the domain class as its default.
+	 */
+	<A extends Annotation> A findAnnotation(Class<A> annotationType) {
+		for (AnnotatedElement element : new AnnotatedElement[] { this.readMethod, this.writeMethod, this.field }) {
+			if (element != null) {
+				A annotation = AnnotatedElementUtils.findMergedAnnotation(element, annotationType);
+				if (annotation != null) {
+					return annotation;
+				}
+			}
+		}
+		return AnnotatedElementUtils.findMergedAnnotation(this.beanClass, annotationType);
+	}
+
+	PropertyDecoder getDecoder(ValueType valueType) {
+		return this.decoders.get(valueType);
+	}
+}
@@ -0,0 +1,302 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.data.gclouddatastore.repository;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Executable;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.WildcardType;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.ObjDoubleConsumer;
+import java.util.function.ObjIntConsumer;
+import java.util.function.ObjLongConsumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.beans.NotReadablePropertyException;
+import org.springframework.beans.NotWritablePropertyException;
+import org.springframework.beans.PropertyAccessorFactory;
+import org.springframework.core.MethodParameter;
+import org.springframework.core.convert.ConversionService;
+import org.springframework.core.convert.TypeDescriptor;
+import org.springframework.core.convert.support.DefaultConversionService;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ReflectionUtils;
+
+/**
+ * Reads and writes a single bean property through functions bound once per domain
+ * class. Public getters and setters are bound with {@link LambdaMetafactory} so that
+ * the JIT can inline them, other accessible methods through a {@link MethodHandle},
+ * and anything else falls back to a {@link org.springframework.beans.BeanWrapper}.
+ * Setters of {@code long}, {@code int} and {@code double} properties are additionally
+ * bound to primitive consumers so that decoding does not box. Values of typed collection
+ * setters are converted to their parameter type with a {@link ConversionService}.
+ */
+final class PropertyValueAccessor {
+
+	private static final Logger LOG = LoggerFactory.getLogger(PropertyValueAccessor.class);
+
+	private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+	private static final ConversionService CONVERSION_SERVICE = DefaultConversionService.getSharedInstance();
+
+	private final Function<Object, Object> getter;
+	private final BiConsumer<Object, Object> setter;
+	private final ObjLongConsumer<Object> longSetter;
+	private final ObjIntConsumer<Object> intSetter;
+	private final ObjDoubleConsumer<Object> doubleSetter;
+
+	private PropertyValueAccessor(Function<Object, Object> getter,
+			BiConsumer<Object, Object> setter, Method writeMethod) {
+		this.getter = getter;
+		this.setter = setter;
+		this.longSetter = generatePrimitiveSetter(writeMethod, long.class, ObjLongConsumer.class);
+		this.intSetter = generatePrimitiveSetter(writeMethod, int.class, ObjIntConsumer.class);
+		this.doubleSetter = generatePrimitiveSetter(writeMethod, double.class, ObjDoubleConsumer.class);
+	}
+
+	Object getValue(Object bean) {
+		return this.getter.apply(bean);
+	}
+
+	void setValue(Object bean, Object value) {
+		this.setter.accept(bean, value);
+	}
+
+	void setLong(Object bean, long value) {
+		if (this.longSetter != null) {
+			this.longSetter.accept(bean, value);
+		}
+		else {
+			this.setter.accept(bean, value);
+		}
+	}
+
+	void setInt(Object bean, int value) {
+		if (this.intSetter != null) {
+			this.intSetter.accept(bean, value);
+		}
+		else {
+			this.setter.accept(bean, value);
+		}
+	}
+
+	void setDouble(Object bean, double value) {
+		if (this.doubleSetter != null) {
+			this.doubleSetter.accept(bean, value);
+		}
+		else {
+			this.setter.accept(bean, value);
+		}
+	}
+
+	static PropertyValueAccessor create(String name, Method readMethod, Method writeMethod) {
+		return new PropertyValueAccessor(createGetter(name, readMethod),
+				createSetter(name, writeMethod), writeMethod);
+	}
+
+	/**
+	 * Returns an accessor of the element at the given index of an {@code Object[]}
+	 * passed as the bean.
+	 */
+	static PropertyValueAccessor forArrayElement(int index) {
+		return new PropertyValueAccessor(array -> ((Object[]) array)[index],
+				(array, value) -> ((Object[]) array)[index] = value, null);
+	}
+
+	private static Function<Object, Object> createGetter(String name, Method readMethod) {
+		if (readMethod == null) {
+			return bean -> {
+				throw new NotReadablePropertyException(bean.getClass(), name);
+			};
+		}
+
+		if (isGeneratable(readMethod)) {
+			try {
+				return generateGetter(readMethod);
+			}
+			catch (Throwable e) {
+				LOG.debug("Cannot generate getter for {}, using method handle", readMethod, e);
+			}
+		}
+
+		try {
+			ReflectionUtils.makeAccessible(readMethod);
+			MethodHandle handle = LOOKUP.unreflect(readMethod)
+					.asType(MethodType.methodType(Object.class, Object.class));
+			return bean -> {
+				try {
+					return (Object) handle.invokeExact(bean);
+				}
+				catch (RuntimeException | Error e) {
+					throw e;
+				}
+				catch (Throwable e) {
+					throw new MarshallingFailureException("Cannot read property '" + name + "'", e);
+				}
+			};
+		}
+		catch (IllegalAccessException | SecurityException e) {
+			LOG.debug("Cannot bind getter {}, using bean wrapper", readMethod, e);
+			return bean -> PropertyAccessorFactory.forBeanPropertyAccess(bean).getPropertyValue(name);
+		}
+	}
+
+	private static BiConsumer<Object, Object> createSetter(String name, Method writeMethod) {
+		if (writeMethod == null) {
+			return (bean, value) -> {
+				throw new NotWritablePropertyException(bean.getClass(), name);
+			};
+		}
+
+		BiConsumer<Object, Object> setter = bindSetter(name, writeMethod);
+		if (setter == null) {
+			return (bean, value) -> PropertyAccessorFactory.forBeanPropertyAccess(bean)
+					.setPropertyValue(name, value);
+		}
+
+		// Typed collections get their elements converted before the setter is called,
+		// except lazy ones, which converting would load.
+		if (needsTypeConversion(writeMethod)) {
+			TypeDescriptor targetType = new TypeDescriptor(MethodParameter.forExecutable(writeMethod, 0));
+			BiConsumer<Object, Object> rawSetter = setter;
+			return (bean, value) -> rawSetter.accept(bean, value == null || isLazy(value, targetType) ? value
+					: CONVERSION_SERVICE.convert(value, TypeDescriptor.forObject(value), targetType));
+		}
+		return setter;
+	}
+
+	private static BiConsumer<Object, Object> bindSetter(String name, Method writeMethod) {
+		if (isGeneratable(writeMethod)) {
+			try {
+				return generateSetter(writeMethod);
+			}
+			catch (Throwable e) {
+				LOG.debug("Cannot generate setter for {}, using method handle", writeMethod, e);
+			}
+		}
+
+		try {
+			ReflectionUtils.makeAccessible(writeMethod);
+			MethodHandle handle = LOOKUP.unreflect(writeMethod)
+					.asType(MethodType.methodType(void.class, Object.class, Object.class));
+			return (bean, value) -> {
+				try {
+					handle.invokeExact(bean, value);
+				}
+				catch (RuntimeException | Error e) {
+					throw e;
+				}
+				catch (Throwable e) {
+					throw new MarshallingFailureException("Cannot write property '" + name + "'", e);
+				}
+			};
+		}
+		catch (IllegalAccessException | SecurityException e) {
+			LOG.debug("Cannot bind setter {}, using bean wrapper", writeMethod, e);
+			return null;
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Function<Object, Object> generateGetter(Method readMethod) throws Throwable {
+		MethodHandle handle = LOOKUP.unreflect(readMethod);
+		CallSite callSite = LambdaMetafactory.metafactory(LOOKUP, "apply",
+				MethodType.methodType(Function.class),
+				MethodType.methodType(Object.class, Object.class),
+				handle,
+				MethodType.methodType(ClassUtils.resolvePrimitiveIfNecessary(readMethod.getReturnType()),
+						readMethod.getDeclaringClass()));
+		return (Function<Object, Object>) callSite.getTarget().invokeExact();
+	}
+
+	@SuppressWarnings("unchecked")
+	private static BiConsumer<Object, Object> generateSetter(Method writeMethod) throws Throwable {
+		MethodHandle handle = LOOKUP.unreflect(writeMethod);
+		CallSite callSite = LambdaMetafactory.metafactory(LOOKUP, "accept",
+				MethodType.methodType(BiConsumer.class),
+				MethodType.methodType(void.class, Object.class, Object.class),
+				handle,
+				MethodType.methodType(void.class, writeMethod.getDeclaringClass(),
+						ClassUtils.resolvePrimitiveIfNecessary(writeMethod.getParameterTypes()[0])));
+		return (BiConsumer<Object, Object>) callSite.getTarget().invokeExact();
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <C> C generatePrimitiveSetter(Method writeMethod, Class<?> primitiveType,
+			Class<C> consumerType) {
+
+		if (writeMethod == null || writeMethod.getParameterTypes()[0] != primitiveType
+				|| !isGeneratable(writeMethod)) {
+			return null;
+		}
+
+		try {
+			MethodHandle handle = LOOKUP.unreflect(writeMethod);
+			CallSite callSite = LambdaMetafactory.metafactory(LOOKUP, "accept",
+					MethodType.methodType(consumerType),
+					MethodType.methodType(void.class, Object.class, primitiveType),
+					handle,
+					MethodType.methodType(void.class, writeMethod.getDeclaringClass(), primitiveType));
+			return (C) callSite.getTarget().invoke();
+		}
+		catch (Throwable e) {
+			LOG.debug("Cannot generate primitive setter for {}", writeMethod, e);
+			return null;
+		}
+	}
+
+	static boolean isGeneratable(Executable method) {
+		if (!Modifier.isPublic(method.getModifiers())) {
+			return false;
+		}
+		for (Class<?> type = method.getDeclaringClass(); type != null; type = type.getEnclosingClass()) {
+			if (!Modifier.isPublic(type.getModifiers())) {
+				return false;
+			}
+		}
+		return ClassUtils.isVisible(method.getDeclaringClass(),
+				PropertyValueAccessor.class.getClassLoader());
+	}
+
+	private static boolean isLazy(Object value, TypeDescriptor targetType) {
+		return (value instanceof LazyEntityMap || value instanceof LazyValueList)
+				&& targetType.getType().isInstance(value);
+	}
+
+	private static boolean needsTypeConversion(Method writeMethod) {
+		Type type = writeMethod.getGenericParameterTypes()[0];
+		if (!(type instanceof ParameterizedType)) {
+			return false;
+		}
+		for (Type argument : ((ParameterizedType) type).getActualTypeArguments()) {
+			if (argument != Object.class && !(argument instanceof WildcardType)) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
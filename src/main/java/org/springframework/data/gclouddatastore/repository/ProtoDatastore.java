@@ -0,0 +1,235 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.data.gclouddatastore.repository;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+
+import com.google.cloud.BaseService;
+import com.google.cloud.RetryHelper;
+import com.google.cloud.datastore.Cursor;
+import com.google.cloud.datastore.DatastoreException;
+import com.google.cloud.datastore.DatastoreOptions;
+import com.google.cloud.datastore.Query;
+import com.google.cloud.datastore.StructuredQuery;
+import com.google.cloud.datastore.spi.v1.DatastoreRpc;
+import com.google.common.io.BaseEncoding;
+import com.google.datastore.v1.CommitRequest;
+import com.google.datastore.v1.Entity;
+import com.google.datastore.v1.EntityResult;
+import com.google.datastore.v1.Key;
+import com.google.datastore.v1.LookupRequest;
+import com.google.datastore.v1.LookupResponse;
+import com.google.datastore.v1.Mutation;
+import com.google.datastore.v1.PartitionId;
+import com.google.datastore.v1.PropertyFilter;
+import com.google.datastore.v1.PropertyOrder;
+import com.google.datastore.v1.PropertyReference;
+import com.google.datastore.v1.QueryResultBatch;
+import com.google.datastore.v1.RunQueryRequest;
+import com.google.datastore.v1.Value;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Int32Value;
+import com.google.rpc.Code;
+
+/**
+ * Sends Datastore v1 protobuf requests through the {@link DatastoreRpc} of the client
+ * library, for repositories using {@link ProtobufMarshalling}. Requests are retried
+ * with the {@link DatastoreOptions#getRetrySettings() retry settings} of the client,
+ * like those the client sends itself.
+ */
+final class ProtoDatastore {
+
+	private static final String KEY_PROPERTY = "__key__";
+
+	private final DatastoreOptions datastoreOptions;
+
+	ProtoDatastore(DatastoreOptions datastoreOptions) {
+		this.datastoreOptions = datastoreOptions;
+	}
+
+	/**
+	 * Returns the protobuf form of a query of the given kind, restricted to the
+	 * descendants of the given ancestor if not {@code null}.
+	 */
+	static com.google.datastore.v1.Query toQuery(String kind, com.google.cloud.datastore.Key ancestor) {
+		com.google.datastore.v1.Query.Builder query = com.google.datastore.v1.Query.newBuilder();
+		query.addKindBuilder().setName(kind);
+		if (ancestor != null) {
+			query.getFilterBuilder().setPropertyFilter(PropertyFilter.newBuilder()
+					.setProperty(PropertyReference.newBuilder().setName(KEY_PROPERTY))
+					.setOp(PropertyFilter.Operator.HAS_ANCESTOR)
+					.setValue(Value.newBuilder().setKeyValue(ProtoEntityCodec.toKey(ancestor))));
+		}
+		return query.build();
+	}
+
+	/**
+	 * Returns the protobuf form of the given query, or {@code null} if it cannot be told
+	 * from the query, that is for GQL queries and structured queries with a filter, which
+	 * are left to the client library.
+	 */
+	static com.google.datastore.v1.Query toQuery(Query<?> query) {
+		if (!(query instanceof StructuredQuery) || ((StructuredQuery<?>) query).getFilter() != null) {
+			return null;
+		}
+
+		StructuredQuery<?> structuredQuery = (StructuredQuery<?>) query;
+		com.google.datastore.v1.Query.Builder builder = com.google.datastore.v1.Query.newBuilder();
+		if (structuredQuery.getKind() != null) {
+			builder.addKindBuilder().setName(structuredQuery.getKind());
+		}
+		for (String property : structuredQuery.getProjection()) {
+			builder.addProjectionBuilder().getPropertyBuilder().setName(property);
+		}
+		for (String property : structuredQuery.getDistinctOn()) {
+			builder.addDistinctOnBuilder().setName(property);
+		}
+		for (StructuredQuery.OrderBy orderBy : structuredQuery.getOrderBy()) {
+			builder.addOrderBuilder()
+					.setProperty(PropertyReference.newBuilder().setName(orderBy.getProperty()))
+					.setDirection(orderBy.getDirection() == StructuredQuery.OrderBy.Direction.ASCENDING
+							? PropertyOrder.Direction.ASCENDING : PropertyOrder.Direction.DESCENDING);
+		}
+		if (structuredQuery.getStartCursor() != null) {
+			builder.setStartCursor(toByteString(structuredQuery.getStartCursor()));
+		}
+		if (structuredQuery.getEndCursor() != null) {
+			builder.setEndCursor(toByteString(structuredQuery.getEndCursor()));
+		}
+		builder.setOffset(structuredQuery.getOffset());
+		if (structuredQuery.getLimit() != null) {
+			builder.setLimit(Int32Value.newBuilder().setValue(structuredQuery.getLimit()));
+		}
+		return builder.build();
+	}
+
+	private static ByteString toByteString(Cursor cursor) {
+		return ByteString.copyFrom(BaseEncoding.base64Url().decode(cursor.toUrlSafe()));
+	}
+
+	private DatastoreRpc getRpc() {
+		return (DatastoreRpc) this.datastoreOptions.getRpc();
+	}
+
+	private <V> V runWithRetries(Callable<V> callable) {
+		try {
+			return RetryHelper.runWithRetries(callable, this.datastoreOptions.getRetrySettings(),
+					BaseService.EXCEPTION_HANDLER, this.datastoreOptions.getClock());
+		}
+		catch (RetryHelper.RetryHelperException e) {
+			if (e.getCause() instanceof DatastoreException) {
+				throw (DatastoreException) e.getCause();
+			}
+			throw new DatastoreException(Code.UNKNOWN_VALUE, e.getMessage(), null, e.getCause());
+		}
+	}
+
+	void upsert(List<Entity> entities) {
+		CommitRequest.Builder request = CommitRequest.newBuilder()
+				.setProjectId(this.datastoreOptions.getProjectId())
+				.setMode(CommitRequest.Mode.NON_TRANSACTIONAL);
+		for (Entity entity : entities) {
+			request.addMutations(Mutation.newBuilder().setUpsert(entity));
+		}
+		CommitRequest commitRequest = request.build();
+		runWithRetries(() -> getRpc().commit(commitRequest));
+	}
+
+	/**
+	 * Looks up the given keys, requesting deferred keys again until every key has been
+	 * found or reported missing.
+	 */
+	List<Entity> lookup(List<Key> keys) {
+		List<Entity> found = new ArrayList<>(keys.size());
+		List<Key> pending = keys;
+		while (!pending.isEmpty()) {
+			LookupRequest request = LookupRequest.newBuilder()
+					.setProjectId(this.datastoreOptions.getProjectId())
+					.addAllKeys(pending)
+					.build();
+			LookupResponse response = runWithRetries(() -> getRpc().lookup(request));
+			for (EntityResult result : response.getFoundList()) {
+				found.add(result.getEntity());
+			}
+			pending = response.getDeferredList();
+		}
+		return found;
+	}
+
+	/**
+	 * Runs a query in the given namespace, or the one of the options if {@code null},
+	 * fetching the following batches from the end cursor of the previous one.
+	 */
+	Iterator<Entity> run(com.google.datastore.v1.Query query, String namespace) {
+		RunQueryRequest.Builder request = RunQueryRequest.newBuilder()
+				.setProjectId(this.datastoreOptions.getProjectId())
+				.setQuery(query);
+		PartitionId.Builder partitionId = request.getPartitionIdBuilder()
+				.setProjectId(this.datastoreOptions.getProjectId());
+		if (namespace == null) {
+			namespace = this.datastoreOptions.getNamespace();
+		}
+		if (namespace != null) {
+			partitionId.setNamespaceId(namespace);
+		}
+
+		return new Iterator<Entity>() {
+
+			private Iterator<EntityResult> results = Collections.emptyIterator();
+			private boolean finished;
+
+			@Override
+			public boolean hasNext() {
+				while (!this.results.hasNext() && !this.finished) {
+					fetch();
+				}
+				return this.results.hasNext();
+			}
+
+			@Override
+			public Entity next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				return this.results.next().getEntity();
+			}
+
+			private void fetch() {
+				RunQueryRequest runQueryRequest = request.build();
+				QueryResultBatch batch = runWithRetries(() -> getRpc().runQuery(runQueryRequest)).getBatch();
+				this.results = batch.getEntityResultsList().iterator();
+				this.finished = batch.getMoreResults() != QueryResultBatch.MoreResultsType.NOT_FINISHED;
+				if (!this.finished) {
+					com.google.datastore.v1.Query.Builder nextQuery = request.getQueryBuilder()
+							.setStartCursor(batch.getEndCursor());
+					if (nextQuery.getOffset() > 0) {
+						nextQuery.setOffset(Math.max(0, nextQuery.getOffset() - batch.getSkippedResults()));
+					}
+					if (nextQuery.hasLimit()) {
+						int limit = nextQuery.getLimit().getValue() - batch.getEntityResultsCount();
+						nextQuery.setLimit(Int32Value.newBuilder().setValue(Math.max(0, limit)));
+					}
+				}
+			}
+		};
+	}
+}
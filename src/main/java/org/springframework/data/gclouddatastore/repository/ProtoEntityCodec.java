@@ -0,0 +1,272 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.data.gclouddatastore.repository;
+
+import java.util.List;
+import java.util.Map;
+
+import com.google.cloud.Timestamp;
+import com.google.cloud.datastore.BlobValue;
+import com.google.cloud.datastore.BooleanValue;
+import com.google.cloud.datastore.DoubleValue;
+import com.google.cloud.datastore.EntityValue;
+import com.google.cloud.datastore.FullEntity;
+import com.google.cloud.datastore.IncompleteKey;
+import com.google.cloud.datastore.Key;
+import com.google.cloud.datastore.KeyValue;
+import com.google.cloud.datastore.LatLng;
+import com.google.cloud.datastore.LatLngValue;
+import com.google.cloud.datastore.ListValue;
+import com.google.cloud.datastore.LongValue;
+import com.google.cloud.datastore.NullValue;
+import com.google.cloud.datastore.PathElement;
+import com.google.cloud.datastore.StringValue;
+import com.google.cloud.datastore.TimestampValue;
+import com.google.cloud.datastore.Value;
+import com.google.datastore.v1.ArrayValue;
+import com.google.datastore.v1.PartitionId;
+import com.google.protobuf.ByteString;
+
+/**
+ * Marshals domain objects to and from Datastore v1 protobuf messages. Common scalar
+ * properties are written without an intermediate {@link Value}; everything else goes
+ * through {@link Marshaller} and is converted value by value, so both paths store the
+ * same data. Reading converts each property to a {@link Value} for the property
+ * decoders, and classes bound through their constructor are read from a whole
+ * {@link FullEntity}, so only the entity itself is saved on that side.
+ *
+ * @see ProtobufMarshalling
+ */
+final class ProtoEntityCodec {
+
+	private static final com.google.datastore.v1.Value NULL_VALUE = com.google.datastore.v1.Value.newBuilder()
+			.setNullValue(com.google.protobuf.NullValue.NULL_VALUE).build();
+
+	private static final FullEntity<IncompleteKey> EMPTY_ENTITY = FullEntity.newBuilder().build();
+
+	private ProtoEntityCodec() {
+	}
+
+	static com.google.datastore.v1.Entity toEntity(Object object, IncompleteKey key) {
+		com.google.datastore.v1.Entity.Builder builder = com.google.datastore.v1.Entity.newBuilder();
+		if (key != null) {
+			builder.setKey(toKey(key));
+		}
+
+		EntityMetadata<?> metadata = EntityMetadataRegistry.getMetadata(object.getClass());
+		for (PropertyMetadata property : metadata.getReadableProperties()) {
+			builder.putProperties(property.getName(), toValue(property, property.getValue(object)));
+		}
+		return builder.build();
+	}
+
+	static com.google.datastore.v1.Entity toEntity(FullEntity<?> entity) {
+		com.google.datastore.v1.Entity.Builder builder = com.google.datastore.v1.Entity.newBuilder();
+		if (entity.getKey() != null) {
+			builder.setKey(toKey(entity.getKey()));
+		}
+		for (String name : entity.getNames()) {
+			builder.putProperties(name, toValue(entity.getValue(name)));
+		}
+		return builder.build();
+	}
+
+	static com.google.datastore.v1.Key toKey(IncompleteKey key) {
+		com.google.datastore.v1.Key.Builder builder = com.google.datastore.v1.Key.newBuilder();
+		PartitionId.Builder partitionId = builder.getPartitionIdBuilder().setProjectId(key.getProjectId());
+		if (key.getNamespace() != null) {
+			partitionId.setNamespaceId(key.getNamespace());
+		}
+		for (PathElement ancestor : key.getAncestors()) {
+			com.google.datastore.v1.Key.PathElement.Builder element = builder.addPathBuilder()
+					.setKind(ancestor.getKind());
+			if (ancestor.hasId()) {
+				element.setId(ancestor.getId());
+			}
+			else if (ancestor.hasName()) {
+				element.setName(ancestor.getName());
+			}
+		}
+		com.google.datastore.v1.Key.PathElement.Builder element = builder.addPathBuilder()
+				.setKind(key.getKind());
+		if (key instanceof Key) {
+			if (((Key) key).hasId()) {
+				element.setId(((Key) key).getId());
+			}
+			else {
+				element.setName(((Key) key).getName());
+			}
+		}
+		return builder.build();
+	}
+
+	static Key toKey(com.google.datastore.v1.Key key) {
+		List<com.google.datastore.v1.Key.PathElement> path = key.getPathList();
+		com.google.datastore.v1.Key.PathElement last = path.get(path.size() - 1);
+		String projectId = key.getPartitionId().getProjectId();
+		Key.Builder builder = last.getIdTypeCase() == com.google.datastore.v1.Key.PathElement.IdTypeCase.NAME
+				? Key.newBuilder(projectId, last.getKind(), last.getName())
+				: Key.newBuilder(projectId, last.getKind(), last.getId());
+		builder.setNamespace(key.getPartitionId().getNamespaceId());
+		for (com.google.datastore.v1.Key.PathElement ancestor : path.subList(0, path.size() - 1)) {
+			builder.addAncestor(
+					ancestor.getIdTypeCase() == com.google.datastore.v1.Key.PathElement.IdTypeCase.NAME
+							? PathElement.of(ancestor.getKind(), ancestor.getName())
+							: PathElement.of(ancestor.getKind(), ancestor.getId()));
+		}
+		return builder.build();
+	}
+
+	private static com.google.datastore.v1.Value toValue(PropertyMetadata property, Object value) {
+		if (property.isIndexed() && property.getCompressed() == null && !property.isEmbeddedBlob()) {
+			com.google.datastore.v1.Value protoValue = toScalarValue(value);
+			if (protoValue != null) {
+				return protoValue;
+			}
+		}
+		return toValue(Marshaller.toDatastoreValue(property, value));
+	}
+
+	/**
+	 * Converts the common scalar types as {@link Marshaller#toDatastoreValue(Object)}
+	 * would, or returns {@code null} for any other type.
+	 */
+	private static com.google.datastore.v1.Value toScalarValue(Object value) {
+		if (value == null) {
+			return NULL_VALUE;
+		}
+		else if (value instanceof String) {
+			return com.google.datastore.v1.Value.newBuilder().setStringValue((String) value)
+					.setExcludeFromIndexes(!Marshaller.isIndexable((String) value)).build();
+		}
+		else if (value instanceof Long || value instanceof Integer) {
+			return com.google.datastore.v1.Value.newBuilder()
+					.setIntegerValue(((Number) value).longValue()).build();
+		}
+		else if (value instanceof Double || value instanceof Float) {
+			return com.google.datastore.v1.Value.newBuilder()
+					.setDoubleValue(((Number) value).doubleValue()).build();
+		}
+		else if (value instanceof Boolean) {
+			return com.google.datastore.v1.Value.newBuilder().setBooleanValue((Boolean) value).build();
+		}
+		else if (value instanceof byte[]) {
+			return com.google.datastore.v1.Value.newBuilder().setBlobValue(ByteString.copyFrom((byte[]) value))
+					.setExcludeFromIndexes(true).build();
+		}
+		return null;
+	}
+
+	static com.google.datastore.v1.Value toValue(Value<?> value) {
+		com.google.datastore.v1.Value.Builder builder = com.google.datastore.v1.Value.newBuilder()
+				.setExcludeFromIndexes(value.excludeFromIndexes());
+		switch (value.getType()) {
+		case NULL:
+			return builder.setNullValue(com.google.protobuf.NullValue.NULL_VALUE).build();
+		case BOOLEAN:
+			return builder.setBooleanValue(((BooleanValue) value).get()).build();
+		case LONG:
+			return builder.setIntegerValue(((LongValue) value).get()).build();
+		case DOUBLE:
+			return builder.setDoubleValue(((DoubleValue) value).get()).build();
+		case STRING:
+			return builder.setStringValue(((StringValue) value).get()).build();
+		case BLOB:
+			return builder.setBlobValue(Blobs.toByteString(((BlobValue) value).get())).build();
+		case TIMESTAMP:
+			return builder.setTimestampValue(((TimestampValue) value).get().toProto()).build();
+		case LAT_LNG:
+			LatLng latLng = ((LatLngValue) value).get();
+			return builder.setGeoPointValue(com.google.type.LatLng.newBuilder()
+					.setLatitude(latLng.getLatitude()).setLongitude(latLng.getLongitude())).build();
+		case KEY:
+			return builder.setKeyValue(toKey(((KeyValue) value).get())).build();
+		case LIST:
+			ArrayValue.Builder arrayValue = builder.getArrayValueBuilder();
+			for (Value<?> element : ((ListValue) value).get()) {
+				arrayValue.addValues(toValue(element));
+			}
+			return builder.build();
+		case ENTITY:
+			return builder.setEntityValue(toEntity(((EntityValue) value).get())).build();
+		default:
+			throw new MarshallingFailureException("Cannot convert " + value.getType() + " value to protobuf");
+		}
+	}
+
+	static <T> T toObject(com.google.datastore.v1.Entity entity, Class<T> type) {
+		EntityMetadata<T> metadata = EntityMetadataRegistry.getMetadata(type);
+		EntityInstantiator<T> instantiator = metadata.getInstantiator();
+		Map<String, com.google.datastore.v1.Value> properties = entity.getPropertiesMap();
+		for (String name : properties.keySet()) {
+			if (instantiator.isConstructorProperty(name)) {
+				return Unmarshaller.unmarshal(toFullEntity(entity), type);
+			}
+		}
+
+		T object = instantiator.createInstance(EMPTY_ENTITY);
+		for (Map.Entry<String, com.google.datastore.v1.Value> entry : properties.entrySet()) {
+			PropertyMetadata property = metadata.getProperty(entry.getKey());
+			if (property != null) {
+				Value<?> value = toValue(entry.getValue());
+				property.getDecoder(value.getType()).decode(value, object, property);
+			}
+		}
+		return object;
+	}
+
+	private static FullEntity<?> toFullEntity(com.google.datastore.v1.Entity entity) {
+		FullEntity.Builder<IncompleteKey> builder = FullEntity.newBuilder();
+		for (Map.Entry<String, com.google.datastore.v1.Value> entry : entity.getPropertiesMap().entrySet()) {
+			builder.set(entry.getKey(), toValue(entry.getValue()));
+		}
+		return builder.build();
+	}
+
+	static Value<?> toValue(com.google.datastore.v1.Value value) {
+		switch (value.getValueTypeCase()) {
+		case BOOLEAN_VALUE:
+			return BooleanValue.of(value.getBooleanValue());
+		case INTEGER_VALUE:
+			return LongValue.of(value.getIntegerValue());
+		case DOUBLE_VALUE:
+			return DoubleValue.of(value.getDoubleValue());
+		case STRING_VALUE:
+			return StringValue.of(value.getStringValue());
+		case BLOB_VALUE:
+			return BlobValue.of(Blobs.wrap(value.getBlobValue()));
+		case TIMESTAMP_VALUE:
+			return TimestampValue.of(Timestamp.fromProto(value.getTimestampValue()));
+		case GEO_POINT_VALUE:
+			return LatLngValue.of(LatLng.of(value.getGeoPointValue().getLatitude(),
+					value.getGeoPointValue().getLongitude()));
+		case KEY_VALUE:
+			return KeyValue.of(toKey(value.getKeyValue()));
+		case ARRAY_VALUE:
+			ListValue.Builder listValue = ListValue.newBuilder();
+			for (com.google.datastore.v1.Value element : value.getArrayValue().getValuesList()) {
+				listValue.addValue(toValue(element));
+			}
+			return listValue.build();
+		case ENTITY_VALUE:
+			return EntityValue.of(toFullEntity(value.getEntityValue()));
+		case NULL_VALUE:
+		default:
+			return NullValue.of();
+		}
+	}
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.data.gclouddatastore.repository;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Makes the repository of the annotated domain class write entities straight to
+ * Datastore v1 protobuf messages when saving, instead of building an intermediate
+ * {@link com.google.cloud.datastore.FullEntity} for every entity, and read the protobuf
+ * responses of lookups and unfiltered structured queries. Meant for bulk ingestion.
+ * Read properties still go through intermediate client values, classes bound through
+ * their constructor through a whole {@code FullEntity}, and derived query methods,
+ * filtered queries and GQL queries through the client library.
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface ProtobufMarshalling {
+}
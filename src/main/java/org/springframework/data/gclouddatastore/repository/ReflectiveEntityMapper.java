@@ -0,0 +1,39 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.data.gclouddatastore.repository;
+
+import com.google.cloud.datastore.FullEntity;
+import com.google.cloud.datastore.IncompleteKey;
+import com.google.cloud.datastore.Key;
+
+class ReflectiveEntityMapper<T> implements EntityMapper<T> {
+
+	private final Class<T> type;
+
+	ReflectiveEntityMapper(Class<T> type) {
+		this.type = type;
+	}
+
+	@Override
+	public FullEntity<? extends IncompleteKey> toEntity(T object, Key key) {
+		return Marshaller.toEntity(object, key);
+	}
+
+	@Override
+	public T toObject(FullEntity<? extends IncompleteKey> entity) {
+		return Unmarshaller.unmarshal(entity, this.type);
+	}
+}
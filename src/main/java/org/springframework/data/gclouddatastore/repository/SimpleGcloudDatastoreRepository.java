@@ -20,13 +20,24 @@ import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Deque;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+import java.util.stream.Stream;
 
+import com.google.cloud.datastore.Cursor;
 import com.google.cloud.datastore.Datastore;
 import com.google.cloud.datastore.DatastoreOptions;
+import com.google.cloud.datastore.DatastoreReaderWriter;
+import com.google.cloud.datastore.DatastoreWriter;
 import com.google.cloud.datastore.Entity;
 import com.google.cloud.datastore.EntityQuery;
 import com.google.cloud.datastore.FullEntity;
@@ -38,13 +49,21 @@ import com.google.cloud.datastore.PathElement;
 import com.google.cloud.datastore.Query;
 import com.google.cloud.datastore.QueryResults;
 import com.google.cloud.datastore.StructuredQuery;
+import com.google.cloud.datastore.Transaction;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
+import com.google.common.hash.HashCode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import org.springframework.core.annotation.AnnotatedElementUtils;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.gclouddatastore.GcloudDatastoreRepository;
 import org.springframework.data.repository.core.EntityInformation;
@@ -52,23 +71,51 @@ import org.springframework.util.Assert;
 
 public class SimpleGcloudDatastoreRepository<T, ID extends Serializable> implements GcloudDatastoreRepository<T, ID> {
 	private static final Logger LOG = LoggerFactory.getLogger(SimpleGcloudDatastoreRepository.class);
-	private static final int BUFFER_SIZE = 50;
+	private static final int MAX_LOOKUP_SIZE = 1000;
 
 	private final DatastoreOptions datastoreOptions;
 	private final EntityInformation<T, ID> entityInformation;
 	private final String kind;
+	private final EntityMapper<T> mapper;
+	private final ProtoDatastore protoDatastore;
+	private final DirtyTracker dirtyTracker;
+	private final EntityCounter counter;
+	private final PageTotals pageTotals = new PageTotals();
+	private final WriteBatcher batcher = new WriteBatcher();
 
 	public SimpleGcloudDatastoreRepository(EntityInformation<T, ID> entityInformation, DatastoreOptions datastoreOptions) {
+		this(entityInformation, datastoreOptions, EntityMappers.getMapper(entityInformation.getJavaType()));
+	}
+
+	public SimpleGcloudDatastoreRepository(EntityInformation<T, ID> entityInformation, DatastoreOptions datastoreOptions,
+			EntityMapper<T> mapper) {
 		Assert.notNull(entityInformation, "EntityInformation must not be null!");
         Assert.notNull(datastoreOptions, "DatastoreOptions must not be null!");
+		Assert.notNull(mapper, "EntityMapper must not be null!");
 
 		this.entityInformation = entityInformation;
 		this.kind = entityInformation.getJavaType().getSimpleName();
 		this.datastoreOptions = datastoreOptions;
+		this.mapper = mapper;
+		this.protoDatastore = AnnotatedElementUtils.hasAnnotation(entityInformation.getJavaType(),
+				ProtobufMarshalling.class) ? new ProtoDatastore(datastoreOptions) : null;
+		this.dirtyTracker = AnnotatedElementUtils.hasAnnotation(entityInformation.getJavaType(),
+				DirtyChecking.class) ? new DirtyTracker() : null;
+		MaintainedCount maintainedCount = AnnotatedElementUtils.findMergedAnnotation(entityInformation.getJavaType(),
+				MaintainedCount.class);
+		this.counter = maintainedCount != null ? new EntityCounter(maintainedCount.reconcileSeconds()) : null;
 	}
 
 	@Override
 	public long count() {
+		List<PathElement> ancestors = new ArrayList<>(Context.getAncestors());
+		if (this.counter != null) {
+			Long count = this.counter.get(ancestors);
+			if (count != null) {
+				return count;
+			}
+		}
+
 		Datastore datastore = this.datastoreOptions.getService();
 		QueryResults<?> results = datastore.run(buildAllKeysQuery());
 		long count = 0;
@@ -76,12 +123,26 @@ public class SimpleGcloudDatastoreRepository<T, ID extends Serializable> impleme
 			results.next();
 			count++;
 		}
+		if (this.counter != null) {
+			this.counter.set(ancestors, count);
+		}
 		return count;
 	}
 
     @Override
 	public void deleteById(final ID id) {
-		deleteKeys(Collections.singletonList(getKey(id)));
+		deleteByKeys(Collections.singletonList(getKey(id)));
+	}
+
+	/**
+	 * Deletes the entities with the given keys, as found by derived delete queries.
+	 */
+	void deleteByKeys(Iterable<Key> keys) {
+		// The deleted instances are unknown, and must not be skipped when saved again.
+		if (this.dirtyTracker != null) {
+			this.dirtyTracker.clear();
+		}
+		deleteKeys(keys);
 	}
 
 	@Override
@@ -102,6 +163,9 @@ public class SimpleGcloudDatastoreRepository<T, ID extends Serializable> impleme
                                 @Override
                                 public Key next() {
                                         T entity = entityIter.next();
+                                        if (dirtyTracker != null) {
+                                                dirtyTracker.forget(entity);
+                                        }
                                         ID id = entityInformation.getId(entity);
                                         return getKey(id);
                                 }
@@ -111,18 +175,93 @@ public class SimpleGcloudDatastoreRepository<T, ID extends Serializable> impleme
 
 	@Override
 	public void deleteAll() {
+		BulkWriteResult result = deleteAllInBulk(BulkWriteOptions.defaults());
+		if (result.hasFailures()) {
+			RuntimeException exception = new IllegalStateException("Failed to delete all entities: " + result);
+			result.getFailures().forEach(failure -> exception.addSuppressed(failure.getException()));
+			throw exception;
+		}
+	}
+
+	@Override
+	public BulkWriteResult deleteAllInBulk(BulkWriteOptions options) {
+		Assert.notNull(options, "BulkWriteOptions must not be null!");
+
+		if (this.dirtyTracker != null) {
+			this.dirtyTracker.clear();
+		}
+		// The counts of the ancestors change by an unknown number.
+		if (this.counter != null) {
+			this.counter.clear();
+		}
 		Datastore datastore = this.datastoreOptions.getService();
 		KeyQuery query = buildAllKeysQuery();
-		deleteKeys(() -> datastore.run(query));
+		Iterator<Key> keys = pageKeys(datastore, query, options.getBatchSize() * options.getMaxConcurrentBatches());
+		BulkWriteResult result = BulkWriter.write(keys, options, (batch, rejected) -> {
+			this.batcher.send(batch, part -> datastore.delete(part.toArray(new Key[part.size()])));
+			return batch.size();
+		});
+		this.pageTotals.clear();
+		if (this.counter != null && !result.hasFailures()) {
+			this.counter.set(new ArrayList<>(Context.getAncestors()), 0);
+		}
+		return result;
+	}
+
+	/**
+	 * Runs a keys-only query one page at a time, starting each page from the cursor
+	 * after the previous one, so that no query stays open while its keys are deleted.
+	 */
+	private Iterator<Key> pageKeys(Datastore datastore, KeyQuery query, int pageSize) {
+		return new AbstractIterator<Key>() {
+
+			private Iterator<Key> page = Collections.emptyIterator();
+			private Cursor cursor;
+			private boolean lastPage;
+
+			@Override
+			protected Key computeNext() {
+				while (!this.page.hasNext()) {
+					if (this.lastPage) {
+						return endOfData();
+					}
+					KeyQuery.Builder builder = query.toBuilder().setLimit(pageSize);
+					if (this.cursor != null) {
+						builder.setStartCursor(this.cursor);
+					}
+					QueryResults<Key> results = datastore.run(builder.build());
+					List<Key> keys = Lists.newArrayList(results);
+					this.cursor = results.getCursorAfter();
+					this.lastPage = keys.size() < pageSize;
+					this.page = keys.iterator();
+				}
+				return this.page.next();
+			}
+		};
 	}
 
 	@Override
 	public boolean existsById(ID id) {
-		return findById(id).isPresent();
+		// The ancestor filter on the key itself keeps the query strongly consistent.
+		Key key = getKey(id);
+		KeyQuery query = Query.newKeyQueryBuilder()
+				.setKind(this.kind)
+				.setFilter(StructuredQuery.CompositeFilter.and(
+						StructuredQuery.PropertyFilter.eq("__key__", key),
+						StructuredQuery.PropertyFilter.hasAncestor(key)))
+				.setLimit(1)
+				.build();
+		return getReaderWriter(getTransaction()).run(query).hasNext();
 	}
 
 	@Override
 	public Iterable<T> query(Query<Entity> query) {
+		com.google.datastore.v1.Query protoQuery = this.protoDatastore != null
+				? ProtoDatastore.toQuery(query) : null;
+		if (protoQuery != null) {
+			return run(protoQuery, query.getNamespace());
+		}
+
 		Datastore datastore = this.datastoreOptions.getService();
 		QueryResults<Entity> results = datastore.run(query);
 		return () -> new Iterator<T>() {
@@ -133,20 +272,26 @@ public class SimpleGcloudDatastoreRepository<T, ID extends Serializable> impleme
 
                         @Override
                         public T next() {
-                                try {
-                                        T entity = entityInformation.getJavaType().newInstance();
-                                        Unmarshaller.unmarshalToObject(results.next(), entity);
-                                        return entity;
-                                }
-                                catch (InstantiationException | IllegalAccessException e) {
-                                        throw new IllegalStateException();
-                                }
+                                return toObject(results.next());
                         }
                 };
 	}
 
+	private Iterable<T> run(com.google.datastore.v1.Query query, String namespace) {
+		return () -> Iterators.transform(this.protoDatastore.run(query, namespace), this::toObject);
+	}
+
 	@Override
 	public Iterable<T> findAll() {
+		if (this.protoDatastore != null) {
+			com.google.datastore.v1.Query query = ProtoDatastore.toQuery(this.kind,
+					getAncestorKey().orElse(null));
+
+			LOG.debug("Find all entities query ({})", query);
+
+			return run(query, null);
+		}
+
 		EntityQuery.Builder queryBuilder = Query.newEntityQueryBuilder()
 				.setKind(this.kind);
 		setAncestorFilter().ifPresent(queryBuilder::setFilter);
@@ -159,37 +304,55 @@ public class SimpleGcloudDatastoreRepository<T, ID extends Serializable> impleme
 
     @Override
 	public Iterable<T> findAllById(Iterable<ID> ids) {
-	    //FIXME this is terrible, it does a query for each key not 1 query
-		return () -> {
-                        Iterator<ID> idIter = ids.iterator();
-                        return new Iterator<T>() {
-                                @Override
-                                public boolean hasNext() {
-                                        return idIter.hasNext();
-                                }
+		Set<Key> keys = new LinkedHashSet<>();
+		for (ID id : ids) {
+			keys.add(getKey(id));
+		}
 
-                                @Override
-                                public T next() {
-                                    Optional<T> optionalNext = findById(idIter.next());
-                                    if (optionalNext.isPresent()) {
-                                    return optionalNext.get();
-                                    } else {
-                                    throw new IllegalStateException("Optional was empty, should handle this correctly");
-                                    }
-                                }
-                        };
-                };
+		Transaction transaction = getTransaction();
+		Map<Key, T> found = new HashMap<>();
+		for (List<Key> chunk : Iterables.partition(keys, MAX_LOOKUP_SIZE)) {
+			if (this.protoDatastore != null && transaction == null) {
+				List<com.google.datastore.v1.Key> protoKeys = Lists.transform(chunk, ProtoEntityCodec::toKey);
+				for (com.google.datastore.v1.Entity entity : this.protoDatastore.lookup(protoKeys)) {
+					found.put(ProtoEntityCodec.toKey(entity.getKey()), toObject(entity));
+				}
+			}
+			else {
+				Iterator<Entity> entities = getReaderWriter(transaction).get(chunk.toArray(new Key[chunk.size()]));
+				while (entities.hasNext()) {
+					Entity entity = entities.next();
+					found.put(entity.getKey(), toObject(entity));
+				}
+			}
+		}
+
+		// Lookups return entities in no particular order and omit missing ones.
+		List<T> results = new ArrayList<>(found.size());
+		for (Key key : keys) {
+			T object = found.get(key);
+			if (object != null) {
+				results.add(object);
+			}
+		}
+		return results;
 	}
 
 	@Override
 	public Optional<T> findById(ID id) {
-		Datastore datastore = this.datastoreOptions.getService();
-		Entity entity = datastore.get(getKey(id));
+		Transaction transaction = getTransaction();
+		if (this.protoDatastore != null && transaction == null) {
+			List<com.google.datastore.v1.Entity> entities = this.protoDatastore
+					.lookup(Collections.singletonList(ProtoEntityCodec.toKey(getKey(id))));
+			return entities.stream().findFirst().map(this::toObject);
+		}
+
+		Entity entity = getReaderWriter(transaction).get(getKey(id));
 		if (entity == null) {
 			return Optional.empty();
 		}
 		else {
-			return Optional.of(Unmarshaller.unmarshal(entity, entityInformation.getJavaType()));
+			return Optional.of(toObject(entity));
 		}
 
 	}
@@ -202,48 +365,219 @@ public class SimpleGcloudDatastoreRepository<T, ID extends Serializable> impleme
 
     @Override
 	public <S extends T> Iterable<S> saveAll(Iterable<S> entities) {
-		Datastore datastore = this.datastoreOptions.getService();
+		write(entities, WriteBatcher.MAX_MUTATIONS, rejected -> {
+			throw (MarshallingFailureException) rejected.getException();
+		});
+		return entities;
+	}
 
-		//FIXME again using buffers what is this for, must be a reason, transaction limit maybe?
-		List<FullEntity<? extends IncompleteKey>> buffer = new ArrayList<>();
+	@Override
+	public BulkWriteResult saveAllInBulk(Iterable<? extends T> entities, BulkWriteOptions options) {
+		Assert.notNull(entities, "Entities must not be null!");
+		Assert.notNull(options, "BulkWriteOptions must not be null!");
 
-		for (S entity : entities) {
-			ID id = this.entityInformation.getId(entity);
-			Key key = getKey(id);
+		return BulkWriter.write(entities.iterator(), options,
+				(batch, rejected) -> write(batch, options.getBatchSize(), rejected));
+	}
 
-			buffer.add(Marshaller.toEntity(entity, key));
-			if (buffer.size() >= BUFFER_SIZE) {
-				datastore.put(buffer.toArray(new FullEntity[buffer.size()]));
-				buffer.clear();
+	@Override
+	public BulkWriteResult saveAllInBulk(Stream<? extends T> entities, BulkWriteOptions options) {
+		Assert.notNull(entities, "Entities must not be null!");
+		Assert.notNull(options, "BulkWriteOptions must not be null!");
+
+		try (Stream<? extends T> stream = entities) {
+			return BulkWriter.write(stream.iterator(), options,
+					(batch, rejected) -> write(batch, options.getBatchSize(), rejected));
+		}
+	}
+
+	private int write(Iterable<? extends T> entities, int batchSize,
+			Consumer<BulkWriteResult.Failure> rejectedConsumer) {
+
+		Transaction transaction = getTransaction();
+		if (this.protoDatastore != null && transaction == null) {
+			return write(entities, entity -> ProtoEntityCodec.toEntity(entity, getEntityKey(entity)),
+					DirtyTracker::fingerprint, com.google.datastore.v1.Entity::getSerializedSize,
+					com.google.datastore.v1.Entity::getSerializedSize, this.protoDatastore::upsert, batchSize, rejectedConsumer);
+		}
+
+		DatastoreReaderWriter datastore = getReaderWriter(transaction);
+		return write(entities, entity -> this.mapper.toEntity(entity, getEntityKey(entity)),
+				DirtyTracker::fingerprint, WriteBatcher::estimateSize, WriteBatcher::encodedSize,
+				buffer -> datastore.put(buffer.toArray(new FullEntity[buffer.size()])), batchSize,
+				rejectedConsumer);
+	}
+
+	/**
+	 * Writes the entities in batches of at most the given size, or fewer as decided by
+	 * the {@link WriteBatcher}, packed by the sizes told by {@code sizer}. Entities whose
+	 * size told by {@code encodedSizer} exceeds the Datastore limit are not sent, and
+	 * reported to {@code rejectedConsumer} once the others have been written.
+	 */
+	private <E> int write(Iterable<? extends T> entities, Function<T, E> marshaller,
+			Function<E, HashCode> fingerprinter, ToIntFunction<E> sizer, ToIntFunction<E> encodedSizer,
+			Consumer<List<E>> writer, int batchSize, Consumer<BulkWriteResult.Failure> rejectedConsumer) {
+
+		List<E> buffer = new ArrayList<>();
+		List<T> written = new ArrayList<>();
+		List<HashCode> fingerprints = new ArrayList<>();
+		List<T> rejected = new ArrayList<>();
+		long bytes = 0;
+		int count = 0;
+		for (T entity : entities) {
+			E marshalled = marshaller.apply(entity);
+			HashCode fingerprint = null;
+			if (this.dirtyTracker != null) {
+				fingerprint = fingerprinter.apply(marshalled);
+				if (!this.dirtyTracker.isDirty(entity, fingerprint)) {
+					continue;
+				}
+			}
+			int size = sizer.applyAsInt(marshalled);
+			if (WriteBatcher.exceedsEntityLimit(marshalled, size, encodedSizer)) {
+				rejected.add(entity);
+				continue;
+			}
+			if (!buffer.isEmpty() && !this.batcher.fits(bytes, size)) {
+				flush(buffer, written, fingerprints, writer);
+				bytes = 0;
+			}
+			buffer.add(marshalled);
+			written.add(entity);
+			if (fingerprint != null) {
+				fingerprints.add(fingerprint);
+			}
+			bytes += size;
+
+			count++;
+
+			if (this.batcher.isFull(buffer.size(), bytes, batchSize)) {
+				flush(buffer, written, fingerprints, writer);
+				bytes = 0;
 			}
 		}
 		if (buffer.size() > 0) {
-			datastore.put(buffer.toArray(new FullEntity[buffer.size()]));
+			flush(buffer, written, fingerprints, writer);
+		}
+		if (!rejected.isEmpty()) {
+			List<ID> ids = Lists.transform(rejected, this.entityInformation::getId);
+			rejectedConsumer.accept(new BulkWriteResult.Failure(rejected, new MarshallingFailureException(
+					"Entities exceed the size limit of " + WriteBatcher.MAX_ENTITY_BYTES
+							+ " bytes and were not saved, ids: " + ids)));
 		}
+		return count;
+	}
 
-		return entities;
+	private <E> void flush(List<E> buffer, List<T> written, List<HashCode> fingerprints,
+			Consumer<List<E>> writer) {
+
+		send(buffer, writer);
+		if (this.counter != null) {
+			this.counter.invalidate(Lists.transform(written, this::getEntityKey));
+		}
+		this.pageTotals.clear();
+		if (this.dirtyTracker != null) {
+			for (int i = 0; i < written.size(); i++) {
+				this.dirtyTracker.track(written.get(i), fingerprints.get(i));
+			}
+		}
+		buffer.clear();
+		written.clear();
+		fingerprints.clear();
+	}
+
+	private T toObject(Entity entity) {
+		T object = this.mapper.toObject(entity);
+		if (this.dirtyTracker != null) {
+			this.dirtyTracker.track(object, DirtyTracker.fingerprint(entity));
+		}
+		return object;
+	}
+
+	private T toObject(com.google.datastore.v1.Entity entity) {
+		T object = ProtoEntityCodec.toObject(entity, this.entityInformation.getJavaType());
+		if (this.dirtyTracker != null) {
+			this.dirtyTracker.track(object, DirtyTracker.fingerprint(entity));
+		}
+		return object;
 	}
 
 	private void deleteKeys(Iterable<Key> keys) {
-	    //TODO WTF does this use a buffer???
-		Datastore datastore = this.datastoreOptions.getService();
+		DatastoreReaderWriter datastore = getReaderWriter(getTransaction());
 
-		List<Key> buffer = new ArrayList<>(BUFFER_SIZE);
+		// Keys are small enough for a full batch to stay far below the request size limit.
+		List<Key> buffer = new ArrayList<>();
 		for (Key key : keys) {
 			buffer.add(key);
 
-			if (buffer.size() >= BUFFER_SIZE) {
-				datastore.delete(buffer.toArray(new Key[buffer.size()]));
+			if (this.batcher.isFull(buffer.size(), 0, WriteBatcher.MAX_MUTATIONS)) {
+				send(buffer, batch -> delete(datastore, batch));
 				buffer.clear();
 			}
 		}
 		if (buffer.size() > 0) {
-			datastore.delete(buffer.toArray(new Key[buffer.size()]));
+			send(buffer, batch -> delete(datastore, batch));
+		}
+	}
+
+	private void delete(DatastoreWriter datastore, List<Key> keys) {
+		datastore.delete(keys.toArray(new Key[keys.size()]));
+		if (this.counter != null) {
+			this.counter.invalidate(keys);
+		}
+		this.pageTotals.clear();
+	}
+
+	/**
+	 * Commits a batch, or only adds it to the transaction bound to the thread, whose
+	 * mutations are sent together on commit.
+	 */
+	private <E> void send(List<E> batch, Consumer<List<E>> writer) {
+		if (getTransaction() != null) {
+			writer.accept(batch);
+		}
+		else {
+			this.batcher.send(batch, writer);
+		}
+	}
+
+	/**
+	 * Returns the transaction bound to the thread by a {@link DatastoreTransactionManager}
+	 * for the options of this repository, or {@code null} if there is none.
+	 */
+	private Transaction getTransaction() {
+		DatastoreTransactionManager.TransactionHolder holder = DatastoreTransactionManager
+				.getTransactionHolder(this.datastoreOptions);
+		if (holder == null) {
+			return null;
+		}
+		holder.onCompletion(this, this::afterTransaction);
+		return holder.getTransaction();
+	}
+
+	private DatastoreReaderWriter getReaderWriter(Transaction transaction) {
+		return transaction != null ? transaction : this.datastoreOptions.getService();
+	}
+
+	private void afterTransaction(boolean committed) {
+		this.pageTotals.clear();
+		// Counts were invalidated when the writes were buffered, and may have been counted
+		// again before the commit, outside of the transaction.
+		if (this.counter != null) {
+			this.counter.clear();
+		}
+		// Fingerprints were updated for the writes that have been rolled back.
+		if (!committed && this.dirtyTracker != null) {
+			this.dirtyTracker.clear();
 		}
 	}
 
 	//FIXME is this really used, it looks like its only for testing? Its a horrible architectural pattern
 	private Optional<StructuredQuery.PropertyFilter> setAncestorFilter() {
+		return getAncestorKey().map(StructuredQuery.PropertyFilter::hasAncestor);
+	}
+
+	private Optional<Key> getAncestorKey() {
 		Datastore datastore = datastoreOptions.getService();
 
 		Deque<PathElement> ancestors = Context.getAncestors();
@@ -256,7 +590,7 @@ public class SimpleGcloudDatastoreRepository<T, ID extends Serializable> impleme
 			keyFactory.addAncestors(init).setKind(last.getKind());
 			Key key = last.hasId() ? keyFactory.newKey(last.getId())
 					: keyFactory.newKey(last.getName());
-			return Optional.of(StructuredQuery.PropertyFilter.hasAncestor(key));
+			return Optional.of(key);
 		}
 
 		return Optional.empty();
@@ -273,6 +607,10 @@ public class SimpleGcloudDatastoreRepository<T, ID extends Serializable> impleme
 		return query;
 	}
 
+	private Key getEntityKey(T entity) {
+		return getKey(this.entityInformation.getId(entity));
+	}
+
 	private Key getKey(ID id) {
 		KeyFactory keyFactory = datastoreOptions.getService()
             .newKeyFactory()
@@ -304,18 +642,37 @@ public class SimpleGcloudDatastoreRepository<T, ID extends Serializable> impleme
     public Page<T> findAll(Pageable pageable) {
         Assert.notNull(pageable, "pageable cannot be null");
 
+        if (pageable.isUnpaged()) {
+            return new PageImpl<>(Lists.newArrayList(findAll(pageable.getSort())));
+        }
+
+        Long count = this.counter != null ? this.counter.get(new ArrayList<>(Context.getAncestors())) : null;
+        if (count != null) {
+            Slice<T> slice = findSlice(pageable);
+            return new PageImpl<>(slice.getContent(), slice.getPageable(), count);
+        }
+
+        Datastore datastore = this.datastoreOptions.getService();
+        return this.pageTotals.getPage(pageable, () -> findSlice(pageable), buildAllKeysQuery(), datastore::run);
+    }
+
+    @Override
+    public Slice<T> findSlice(Pageable pageable) {
+        Assert.notNull(pageable, "pageable cannot be null");
+
+        if (pageable.isUnpaged()) {
+            return new SliceImpl<>(Lists.newArrayList(findAll(pageable.getSort())));
+        }
+
         EntityQuery.Builder queryBuilder = Query.newEntityQueryBuilder()
             .setKind(this.kind);
         setAncestorFilter().ifPresent(queryBuilder::setFilter);
-        queryBuilder.setLimit(pageable.getPageSize())
-                    .setOffset(pageable.getPageNumber());
+        CursorPageable.applyTo(pageable, queryBuilder);
 
         addOrderBy(pageable.getSort(), queryBuilder);
 
-        //FIXME this is sub optimal but we only have an interator so we need to consume it to get the size
-        //FIXME this does not create a true representation of the total number of results.
-        List<T> results = Lists.newArrayList(query(queryBuilder.build()));
-        return new PageImpl<>(results, pageable, results.size());
+        Datastore datastore = this.datastoreOptions.getService();
+        return CursorPageable.toSlice(pageable, datastore.run(queryBuilder.build()), this::toObject);
     }
 
     private void addOrderBy(Sort sort, EntityQuery.Builder queryBuilder) {
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.data.gclouddatastore.repository;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded, lock-free string deduplication pool. Each string hashes to a single slot,
+ * and a string that finds its slot taken by a different one replaces it, so the pool
+ * never grows and never blocks, at the cost of missing some duplicates.
+ */
+final class StringPool {
+
+	private static final int MAX_SIZE = 1 << 20;
+
+	private final AtomicReferenceArray<String> slots;
+	private final int mask;
+
+	StringPool(int size) {
+		int capacity = Integer.highestOneBit(Math.max(1, Math.min(size, MAX_SIZE)) * 2 - 1);
+		this.slots = new AtomicReferenceArray<>(capacity);
+		this.mask = capacity - 1;
+	}
+
+	String intern(String value) {
+		if (value == null) {
+			return null;
+		}
+
+		int hash = value.hashCode();
+		int index = (hash ^ (hash >>> 16)) & this.mask;
+		String pooled = this.slots.get(index);
+		if (value.equals(pooled)) {
+			return pooled;
+		}
+		this.slots.lazySet(index, value);
+		return value;
+	}
+}
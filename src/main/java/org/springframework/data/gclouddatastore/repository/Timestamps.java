@@ -0,0 +1,87 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.data.gclouddatastore.repository;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Calendar;
+import java.util.Date;
+
+import com.google.cloud.Timestamp;
+
+/**
+ * Converts between {@link Timestamp} and the supported temporal types through epoch
+ * seconds and nanoseconds. Local date and time types use the system default time zone.
+ */
+final class Timestamps {
+
+	private Timestamps() {
+	}
+
+	static Timestamp of(Instant instant) {
+		return Timestamp.ofTimeSecondsAndNanos(instant.getEpochSecond(), instant.getNano());
+	}
+
+	static Timestamp of(Calendar calendar) {
+		return Timestamp.of(calendar.getTime());
+	}
+
+	static Timestamp of(OffsetDateTime dateTime) {
+		return Timestamp.ofTimeSecondsAndNanos(dateTime.toEpochSecond(), dateTime.getNano());
+	}
+
+	static Timestamp of(ZonedDateTime dateTime) {
+		return Timestamp.ofTimeSecondsAndNanos(dateTime.toEpochSecond(), dateTime.getNano());
+	}
+
+	static Timestamp of(LocalDateTime dateTime) {
+		return of(dateTime.atZone(ZoneId.systemDefault()));
+	}
+
+	static Timestamp of(LocalDate date) {
+		return of(date.atStartOfDay(ZoneId.systemDefault()));
+	}
+
+	static Instant toInstant(Timestamp timestamp) {
+		return Instant.ofEpochSecond(timestamp.getSeconds(), timestamp.getNanos());
+	}
+
+	static Date toDate(Timestamp timestamp) {
+		return new Date(toEpochMilli(timestamp));
+	}
+
+	static Calendar toCalendar(Timestamp timestamp) {
+		return new Calendar.Builder().setInstant(toEpochMilli(timestamp)).build();
+	}
+
+	static LocalDateTime toLocalDateTime(Timestamp timestamp) {
+		return LocalDateTime.ofInstant(toInstant(timestamp), ZoneId.systemDefault());
+	}
+
+	static LocalDate toLocalDate(Timestamp timestamp) {
+		return toLocalDateTime(timestamp).toLocalDate();
+	}
+
+	private static long toEpochMilli(Timestamp timestamp) {
+		return Math.addExact(Math.multiplyExact(timestamp.getSeconds(), 1000L),
+				timestamp.getNanos() / 1_000_000);
+	}
+}
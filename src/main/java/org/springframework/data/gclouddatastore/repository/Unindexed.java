@@ -0,0 +1,43 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.data.gclouddatastore.repository;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Excludes a property from the built-in indexes, so that writing it costs no index
+ * writes. The property can no longer be used in query filters or sort orders. Lists are
+ * excluded element by element and embedded entities including all their properties. On
+ * a class it is the default for all its properties.
+ * <p>
+ * Blobs and strings longer than 1500 bytes are always excluded, as Datastore cannot
+ * index them.
+ */
+@Target({ ElementType.TYPE, ElementType.FIELD, ElementType.METHOD })
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface Unindexed {
+
+	/**
+	 * Whether to exclude the property, {@code false} to index a property of a class
+	 * annotated as unindexed.
+	 */
+	boolean value() default true;
+}
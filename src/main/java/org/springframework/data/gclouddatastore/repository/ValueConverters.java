@@ -0,0 +1,54 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.data.gclouddatastore.repository;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.google.cloud.datastore.ValueType;
+
+import org.springframework.util.Assert;
+
+/**
+ * Registry of custom {@link ValueConverter}s consulted by the {@link Unmarshaller} before
+ * its built-in conversions. Converters are matched on the exact property type and are
+ * resolved when the mapping metadata of a domain class is built, so they should be
+ * registered before the first entity of that class is read.
+ */
+public final class ValueConverters {
+
+	private static final Map<ValueType, Map<Class<?>, ValueConverter<?>>> CONVERTERS = new ConcurrentHashMap<>();
+
+	private ValueConverters() {
+	}
+
+	public static <T> void register(ValueType valueType, Class<T> targetType,
+			ValueConverter<? extends T> converter) {
+
+		Assert.notNull(valueType, "ValueType must not be null!");
+		Assert.notNull(targetType, "Target type must not be null!");
+		Assert.notNull(converter, "ValueConverter must not be null!");
+
+		CONVERTERS.computeIfAbsent(valueType, key -> new ConcurrentHashMap<>())
+				.put(targetType, converter);
+		EntityMetadataRegistry.clear();
+	}
+
+	static ValueConverter<?> getConverter(ValueType valueType, Class<?> targetType) {
+		Map<Class<?>, ValueConverter<?>> converters = CONVERTERS.get(valueType);
+		return converters == null ? null : converters.get(targetType);
+	}
+}
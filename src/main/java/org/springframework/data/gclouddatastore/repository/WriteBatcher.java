@@ -0,0 +1,222 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.data.gclouddatastore.repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.ToIntFunction;
+import java.util.regex.Pattern;
+
+import com.google.cloud.datastore.BaseEntity;
+import com.google.cloud.datastore.BaseKey;
+import com.google.cloud.datastore.Blob;
+import com.google.cloud.datastore.DatastoreException;
+import com.google.cloud.datastore.FullEntity;
+import com.google.cloud.datastore.Key;
+import com.google.cloud.datastore.ListValue;
+import com.google.cloud.datastore.PathElement;
+import com.google.cloud.datastore.RawValue;
+import com.google.cloud.datastore.Value;
+import com.google.common.base.Utf8;
+import com.google.rpc.Code;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Splits writes into commits within the Datastore limits of 500 mutations and 10 MB per
+ * request. The number of mutations per commit adapts to the commit latency: it grows
+ * while full commits are fast, and shrinks when they are slow. A commit that exceeds
+ * its deadline halves it, and is retried in two halves, as is a commit rejected for
+ * exceeding the request size limit. Commits rejected as invalid otherwise fail as they
+ * are, so that a batch is never partly written.
+ */
+final class WriteBatcher {
+
+	private static final Logger LOG = LoggerFactory.getLogger(WriteBatcher.class);
+
+	static final int MAX_MUTATIONS = 500;
+
+	// Leaves room for the keys and framing of the commit request.
+	static final long MAX_REQUEST_BYTES = 9L * 1024 * 1024;
+
+	static final long MAX_ENTITY_BYTES = 1024 * 1024 - 4;
+
+	// Field tag and length prefix of a value, its flags, and the entry of a property.
+	private static final int FRAMING_BYTES = 12;
+
+	// Longest encoding of a number, timestamp or point.
+	private static final int FIXED_VALUE_BYTES = 24;
+
+	private static final int INITIAL_LIMIT = 50;
+
+	private static final long FAST_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+
+	private static final long SLOW_NANOS = TimeUnit.SECONDS.toNanos(2);
+
+	// How Datastore tells requests over its size limit from other invalid arguments.
+	private static final Pattern REQUEST_TOO_LARGE = Pattern.compile(
+			"payload size exceeds the limit|request (is )?too (large|big)", Pattern.CASE_INSENSITIVE);
+
+	private final AtomicInteger limit = new AtomicInteger(INITIAL_LIMIT);
+
+	/**
+	 * Returns the current number of mutations per commit.
+	 */
+	int getLimit() {
+		return this.limit.get();
+	}
+
+	/**
+	 * Returns whether a batch is full, given its number of mutations and bytes, and the
+	 * number of mutations per commit requested by the caller.
+	 */
+	boolean isFull(int count, long bytes, int maxCount) {
+		return count >= Math.min(getLimit(), maxCount) || bytes >= MAX_REQUEST_BYTES;
+	}
+
+	/**
+	 * Returns whether a mutation of the given size still fits a batch of the given bytes.
+	 */
+	boolean fits(long bytes, long size) {
+		return bytes + size <= MAX_REQUEST_BYTES;
+	}
+
+	/**
+	 * Estimates the size of an entity in a commit request from its values, without
+	 * encoding it, to pack batches. The estimate includes the worst-case framing of every
+	 * value, so it is never below the encoded size, but can be several times above it for
+	 * entities made of many small values.
+	 */
+	static int estimateSize(BaseEntity<?> entity) {
+		long size = entity.getKey() == null ? 0 : estimateSize(entity.getKey()) + FRAMING_BYTES;
+		for (String name : entity.getNames()) {
+			size += Utf8.encodedLength(name) + FRAMING_BYTES + estimateSize(entity.getValue(name));
+		}
+		return (int) Math.min(Integer.MAX_VALUE, size);
+	}
+
+	/**
+	 * Returns the size of an entity encoded as a protobuf message.
+	 */
+	static int encodedSize(FullEntity<?> entity) {
+		return ProtoEntityCodec.toEntity(entity).getSerializedSize();
+	}
+
+	/**
+	 * Returns whether an entity exceeds the Datastore size limit. Only entities estimated
+	 * above the limit are encoded, to compare their actual size.
+	 */
+	static <E> boolean exceedsEntityLimit(E entity, int estimatedSize, ToIntFunction<E> encodedSizer) {
+		return estimatedSize > MAX_ENTITY_BYTES && encodedSizer.applyAsInt(entity) > MAX_ENTITY_BYTES;
+	}
+
+	private static long estimateSize(Value<?> value) {
+		switch (value.getType()) {
+		case STRING:
+			return Utf8.encodedLength((String) value.get()) + FRAMING_BYTES;
+		case BLOB:
+			return ((Blob) value.get()).getLength() + FRAMING_BYTES;
+		case KEY:
+			return estimateSize((Key) value.get()) + FRAMING_BYTES;
+		case ENTITY:
+			return estimateSize((FullEntity<?>) value.get()) + FRAMING_BYTES;
+		case LIST:
+			long size = FRAMING_BYTES;
+			for (Value<?> element : ((ListValue) value).get()) {
+				size += estimateSize(element) + FRAMING_BYTES;
+			}
+			return size;
+		case RAW_VALUE:
+			return ((RawValue) value).get().getSerializedSize() + FRAMING_BYTES;
+		default:
+			// Numbers, timestamps, points, booleans and nulls.
+			return FIXED_VALUE_BYTES + FRAMING_BYTES;
+		}
+	}
+
+	private static long estimateSize(BaseKey key) {
+		long size = Utf8.encodedLength(key.getProjectId()) + Utf8.encodedLength(key.getNamespace())
+				+ 2 * FRAMING_BYTES;
+		for (PathElement element : key.getAncestors()) {
+			size += estimateSize(element.getKind(), element.getName());
+		}
+		String name = key instanceof Key ? ((Key) key).getName() : null;
+		return size + estimateSize(key.getKind(), name);
+	}
+
+	private static long estimateSize(String kind, String name) {
+		return Utf8.encodedLength(kind) + (name != null ? Utf8.encodedLength(name) : FIXED_VALUE_BYTES)
+				+ 3 * FRAMING_BYTES;
+	}
+
+	/**
+	 * Commits a batch with the writer, retrying it in halves if it exceeds its deadline
+	 * or the request size limit.
+	 */
+	<E> void send(List<E> batch, Consumer<List<E>> writer) {
+		long start = System.nanoTime();
+		try {
+			writer.accept(batch);
+		}
+		catch (DatastoreException e) {
+			boolean slow = hasStatus(e, Code.DEADLINE_EXCEEDED);
+			if (batch.size() < 2 || !slow && !isRequestTooLarge(e)) {
+				throw e;
+			}
+			if (slow) {
+				shrink(batch.size() / 2);
+			}
+			LOG.debug("Commit of {} mutations failed, retrying in halves", batch.size(), e);
+			int half = batch.size() / 2;
+			send(new ArrayList<>(batch.subList(0, half)), writer);
+			send(new ArrayList<>(batch.subList(half, batch.size())), writer);
+			return;
+		}
+		adapt(batch.size(), System.nanoTime() - start);
+	}
+
+	private void adapt(int size, long nanos) {
+		int current = this.limit.get();
+		if (nanos > SLOW_NANOS) {
+			shrink(current - current / 4);
+		}
+		else if (nanos < FAST_NANOS && size >= current && current < MAX_MUTATIONS) {
+			// Only full batches tell how the limit performs.
+			this.limit.compareAndSet(current, Math.min(MAX_MUTATIONS, current + current / 4 + 1));
+		}
+	}
+
+	private void shrink(int target) {
+		this.limit.accumulateAndGet(Math.max(1, target), Math::min);
+	}
+
+	/**
+	 * Returns whether the commit was rejected as an invalid argument for exceeding the
+	 * request size limit, rather than for an invalid mutation.
+	 */
+	private static boolean isRequestTooLarge(DatastoreException e) {
+		return hasStatus(e, Code.INVALID_ARGUMENT) && e.getMessage() != null
+				&& REQUEST_TOO_LARGE.matcher(e.getMessage()).find();
+	}
+
+	private static boolean hasStatus(DatastoreException e, Code code) {
+		return e.getReason() != null ? code.name().equals(e.getReason()) : e.getCode() == code.getNumber();
+	}
+}
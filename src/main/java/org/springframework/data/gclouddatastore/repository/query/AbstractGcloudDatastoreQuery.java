@@ -0,0 +1,231 @@
+package org.springframework.data.gclouddatastore.repository.query;
+
+import com.google.cloud.datastore.BaseEntity;
+import com.google.cloud.datastore.Datastore;
+import com.google.cloud.datastore.DatastoreOptions;
+import com.google.cloud.datastore.FullEntity;
+import com.google.cloud.datastore.Key;
+import com.google.cloud.datastore.KeyQuery;
+import com.google.cloud.datastore.LatLng;
+import com.google.cloud.datastore.ProjectionEntity;
+import com.google.cloud.datastore.QueryResults;
+import com.google.cloud.datastore.StructuredQuery;
+import com.google.cloud.datastore.TimestampValue;
+import com.google.cloud.datastore.Value;
+import com.google.cloud.datastore.ValueType;
+import org.springframework.beans.BeanUtils;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.gclouddatastore.repository.CursorPageable;
+import org.springframework.data.gclouddatastore.repository.EntityMapper;
+import org.springframework.data.gclouddatastore.repository.EntityMappers;
+import org.springframework.data.gclouddatastore.repository.ProjectionQuery;
+import org.springframework.data.repository.query.ParametersParameterAccessor;
+import org.springframework.data.repository.query.QueryMethod;
+import org.springframework.data.repository.query.RepositoryQuery;
+import org.springframework.data.repository.query.ResultProcessor;
+import org.springframework.data.repository.query.ReturnedType;
+import org.springframework.data.repository.query.parser.Part;
+import org.springframework.data.repository.query.parser.PartTree;
+import org.springframework.util.ClassUtils;
+
+import java.beans.PropertyDescriptor;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Base class of derived queries. Methods returning a closed interface or DTO projection
+ * read whole entities and project them, unless they are annotated with
+ * {@link ProjectionQuery}. Those run a Datastore projection query on the properties the
+ * projection needs, distinct on them for {@code findDistinct...} methods, as long as all
+ * those properties are indexed, projectable scalar values that are not used in an
+ * equality filter. Note that a projection query needs a composite index, and only
+ * returns entities that have all projected properties set.
+ */
+public abstract class AbstractGcloudDatastoreQuery implements RepositoryQuery {
+
+    private static final Class<?>[] TIMESTAMP_TYPES = { Date.class, Calendar.class,
+        Instant.class, LocalDate.class, LocalDateTime.class, OffsetDateTime.class, ZonedDateTime.class };
+
+    private final QueryMethod queryMethod;
+    private final Class<?> domainType;
+    private final PartTree tree;
+    private final ResultProcessor resultProcessor;
+    private final DatastoreOptions datastoreOptions;
+    private final EntityMapper<?> mapper;
+    private final List<String> projection;
+    private final Set<String> timestampProperties = new HashSet<>();
+
+    protected AbstractGcloudDatastoreQuery(QueryMethod queryMethod, DatastoreOptions datastoreOptions,
+            EntityMapper<?> mapper) {
+        this.queryMethod = queryMethod;
+        this.datastoreOptions = datastoreOptions;
+        this.mapper = mapper;
+        this.resultProcessor = queryMethod.getResultProcessor();
+        this.domainType = resultProcessor.getReturnedType().getDomainType();
+        this.tree = new PartTree(queryMethod.getName(), domainType);
+        this.projection = resolveProjection(resultProcessor.getReturnedType());
+    }
+
+    private List<String> resolveProjection(ReturnedType returnedType) {
+        if (!isProjectionQuery() || !returnedType.isProjecting()
+                || returnedType.getInputProperties().isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        Set<String> filtered = new HashSet<>();
+        for (Part part : tree.getParts()) {
+            filtered.add(part.getProperty().toDotPath());
+        }
+
+        List<String> projection = new ArrayList<>();
+        for (String name : returnedType.getInputProperties()) {
+            PropertyDescriptor property = BeanUtils.getPropertyDescriptor(domainType, name);
+            if (property == null || filtered.contains(name)
+                    || !EntityMappers.isIndexed(domainType, name)) {
+                return Collections.emptyList();
+            }
+
+            Class<?> type = property.getPropertyType();
+            if (isTimestamp(type)) {
+                timestampProperties.add(name);
+            }
+            else if (!ClassUtils.isPrimitiveOrWrapper(type) && type != String.class
+                    && type != LatLng.class) {
+                return Collections.emptyList();
+            }
+            projection.add(name);
+        }
+        return projection;
+    }
+
+    private boolean isProjectionQuery() {
+        return queryMethod instanceof GcloudDatastoreQueryMethod
+            && ((GcloudDatastoreQueryMethod) queryMethod).isProjectionQuery();
+    }
+
+    private static boolean isTimestamp(Class<?> type) {
+        for (Class<?> timestampType : TIMESTAMP_TYPES) {
+            if (timestampType.isAssignableFrom(type)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    protected Iterator<Object> runQuery(Object[] parameters) {
+        Datastore datastore = datastoreOptions.getService();
+        QueryResults<? extends BaseEntity<Key>> results = datastore
+            .run(createQueryBuilder(parameters).build());
+
+        return new Iterator<Object>() {
+            @Override
+            public boolean hasNext() {
+                return results.hasNext();
+            }
+
+            @Override
+            public Object next() {
+                return toObject(results.next());
+            }
+        };
+    }
+
+    /**
+     * Runs the query for the page given by the {@link Pageable} parameter, starting from
+     * its cursor if it is a {@link CursorPageable}.
+     */
+    protected Slice<Object> runSliceQuery(Object[] parameters) {
+        Pageable pageable = new ParametersParameterAccessor(queryMethod.getParameters(), parameters)
+            .getPageable();
+        if (pageable.isUnpaged()) {
+            List<Object> result = new ArrayList<>();
+            runQuery(parameters).forEachRemaining(result::add);
+            return new SliceImpl<>(result);
+        }
+
+        StructuredQuery.Builder<? extends BaseEntity<Key>> queryBuilder = createQueryBuilder(parameters);
+        CursorPageable.applyTo(pageable, queryBuilder);
+
+        Datastore datastore = datastoreOptions.getService();
+        return CursorPageable.toSlice(pageable, datastore.run(queryBuilder.build()), this::toObject);
+    }
+
+    StructuredQuery.Builder<? extends BaseEntity<Key>> createQueryBuilder(Object[] parameters) {
+        GcloudDatastoreQueryCreator queryCreator = createQueryCreator(parameters);
+        StructuredQuery.Builder<? extends BaseEntity<Key>> queryBuilder;
+        if (projection.isEmpty()) {
+            queryBuilder = queryCreator.createQuery();
+        }
+        else {
+            queryBuilder = queryCreator.createProjectionQuery(projection, tree.isDistinct());
+        }
+        queryBuilder.setKind(domainType.getSimpleName());
+        return queryBuilder;
+    }
+
+    /**
+     * Runs the query as a keys-only query, returning at most {@code limit} keys if not
+     * {@code null}.
+     */
+    protected QueryResults<Key> runKeyQuery(Object[] parameters, Integer limit) {
+        KeyQuery.Builder queryBuilder = createQueryCreator(parameters).createKeyQuery();
+        queryBuilder.setKind(domainType.getSimpleName());
+        if (limit != null) {
+            queryBuilder.setLimit(limit);
+        }
+
+        Datastore datastore = datastoreOptions.getService();
+        return datastore.run(queryBuilder.build());
+    }
+
+    private GcloudDatastoreQueryCreator createQueryCreator(Object[] parameters) {
+        return new GcloudDatastoreQueryCreator(
+            tree,
+            new ParametersParameterAccessor(queryMethod.getParameters(), parameters),
+            datastoreOptions);
+    }
+
+    private Object toObject(BaseEntity<Key> entity) {
+        if (entity instanceof FullEntity) {
+            return mapper.toObject((FullEntity<?>) entity);
+        }
+
+        // Projected timestamps come back as microseconds, which only ProjectionEntity decodes.
+        ProjectionEntity projectionEntity = (ProjectionEntity) entity;
+        FullEntity.Builder<Key> builder = FullEntity.newBuilder(projectionEntity.getKey());
+        for (String name : projectionEntity.getNames()) {
+            Value<?> value = projectionEntity.getValue(name);
+            if (value.getType() == ValueType.LONG && timestampProperties.contains(name)) {
+                value = TimestampValue.of(projectionEntity.getTimestamp(name));
+            }
+            builder.set(name, value);
+        }
+        return mapper.toObject(builder.build());
+    }
+
+    protected PartTree getTree() {
+        return tree;
+    }
+
+    protected ResultProcessor getResultProcessor() {
+        return resultProcessor;
+    }
+
+    @Override
+    public QueryMethod getQueryMethod() {
+        return queryMethod;
+    }
+}
@@ -1,66 +1,36 @@
 package org.springframework.data.gclouddatastore.repository.query;
 
-import com.google.cloud.datastore.Datastore;
 import com.google.cloud.datastore.DatastoreOptions;
-import com.google.cloud.datastore.Entity;
-import com.google.cloud.datastore.QueryResults;
-import com.google.cloud.datastore.StructuredQuery;
-import org.springframework.data.gclouddatastore.repository.Unmarshaller;
-import org.springframework.data.repository.query.ParametersParameterAccessor;
+import org.springframework.data.gclouddatastore.repository.EntityMapper;
+import org.springframework.data.gclouddatastore.repository.EntityMappers;
 import org.springframework.data.repository.query.QueryMethod;
-import org.springframework.data.repository.query.RepositoryQuery;
-import org.springframework.data.repository.query.ResultProcessor;
-import org.springframework.data.repository.query.parser.PartTree;
 import org.springframework.lang.Nullable;
 
-public class EntityQuery implements RepositoryQuery {
-    private final QueryMethod queryMethod;
-    private final Class<?> domainType;
-    private final PartTree tree;
-    private final ResultProcessor resultProcessor;
-    private final DatastoreOptions datastoreOptions;
+import java.util.Iterator;
+
+public class EntityQuery extends AbstractGcloudDatastoreQuery {
 
     public EntityQuery(QueryMethod queryMethod, DatastoreOptions datastoreOptions) {
-        this.queryMethod = queryMethod;
-        this.datastoreOptions = datastoreOptions;
-        this.resultProcessor = queryMethod.getResultProcessor();
-        this.domainType = resultProcessor.getReturnedType().getDomainType();
-        this.tree = new PartTree(queryMethod.getName(), domainType);
+        this(queryMethod, datastoreOptions, EntityMappers.getMapper(
+            queryMethod.getResultProcessor().getReturnedType().getDomainType()));
+    }
+
+    public EntityQuery(QueryMethod queryMethod, DatastoreOptions datastoreOptions, EntityMapper<?> mapper) {
+        super(queryMethod, datastoreOptions, mapper);
     }
 
     @Nullable
     @Override
     public Object execute(Object[] parameters) {
-        GcloudDatastoreQueryCreator queryCreator = new GcloudDatastoreQueryCreator(
-            tree,
-            new ParametersParameterAccessor(queryMethod.getParameters(), parameters),
-            datastoreOptions);
-        StructuredQuery.Builder<Entity> queryBuilder = queryCreator.createQuery();
-        queryBuilder.setKind(domainType.getSimpleName());
-
-        Unmarshaller unmarshaller = new Unmarshaller();
-        Datastore datastore = datastoreOptions.getService();
-        QueryResults<Entity> results = datastore
-            .run(queryBuilder.build());
+        Iterator<Object> results = runQuery(parameters);
 
-        try {
-            Object result;
-            if (!results.hasNext()) {
-                result = null;
-            }
-            else {
-                result = domainType.newInstance();
-                unmarshaller.unmarshalToObject(results.next(),
-                    result);
-            }
-            return resultProcessor.processResult(result);
-        } catch (InstantiationException | IllegalAccessException e) {
-            throw new IllegalStateException(e);
+        Object result;
+        if (!results.hasNext()) {
+            result = null;
         }
-    }
-
-    @Override
-    public QueryMethod getQueryMethod() {
-        return queryMethod;
+        else {
+            result = results.next();
+        }
+        return getResultProcessor().processResult(result);
     }
 }
@@ -17,6 +17,7 @@
 package org.springframework.data.gclouddatastore.repository.query;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Deque;
 import java.util.Iterator;
 import java.util.LinkedList;
@@ -28,7 +29,9 @@ import com.google.cloud.datastore.DatastoreOptions;
 import com.google.cloud.datastore.Entity;
 import com.google.cloud.datastore.Key;
 import com.google.cloud.datastore.KeyFactory;
+import com.google.cloud.datastore.KeyQuery;
 import com.google.cloud.datastore.PathElement;
+import com.google.cloud.datastore.ProjectionEntityQuery;
 import com.google.cloud.datastore.Query;
 import com.google.cloud.datastore.StructuredQuery;
 
@@ -127,11 +130,47 @@ public class GcloudDatastoreQueryCreator extends
 		}
 		else {
 			return Query.newEntityQueryBuilder()
-					.addOrderBy(orderBy[0], orderBy)
+					.addOrderBy(orderBy[0], Arrays.copyOfRange(orderBy, 1, orderBy.length))
 					.setFilter(setAncestorFilter(filter));
 		}
 	}
 
+	/**
+	 * Creates a projection query with the same filter and order as
+	 * {@link #createQuery()}, distinct on the projected properties if requested.
+	 */
+	public ProjectionEntityQuery.Builder createProjectionQuery(List<String> projection,
+			boolean distinct) {
+
+		StructuredQuery<Entity> query = createQuery().build();
+		ProjectionEntityQuery.Builder builder = Query.newProjectionEntityQueryBuilder()
+				.setFilter(query.getFilter());
+		for (StructuredQuery.OrderBy orderBy : query.getOrderBy()) {
+			builder.addOrderBy(orderBy);
+		}
+
+		String first = projection.get(0);
+		String[] rest = projection.subList(1, projection.size()).toArray(new String[0]);
+		builder.setProjection(first, rest);
+		if (distinct) {
+			builder.setDistinctOn(first, rest);
+		}
+		return builder;
+	}
+
+	/**
+	 * Creates a keys-only query with the same filter and order as {@link #createQuery()}.
+	 */
+	public KeyQuery.Builder createKeyQuery() {
+		StructuredQuery<Entity> query = createQuery().build();
+		KeyQuery.Builder builder = Query.newKeyQueryBuilder()
+				.setFilter(query.getFilter());
+		for (StructuredQuery.OrderBy orderBy : query.getOrderBy()) {
+			builder.addOrderBy(orderBy);
+		}
+		return builder;
+	}
+
 	protected StructuredQuery.Filter setAncestorFilter(StructuredQuery.Filter filter) {
 		Datastore datastore = datastoreOptions.getService();
 
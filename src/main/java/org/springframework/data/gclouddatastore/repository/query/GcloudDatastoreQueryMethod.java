@@ -0,0 +1,27 @@
+package org.springframework.data.gclouddatastore.repository.query;
+
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.data.gclouddatastore.repository.ProjectionQuery;
+import org.springframework.data.projection.ProjectionFactory;
+import org.springframework.data.repository.core.RepositoryMetadata;
+import org.springframework.data.repository.query.QueryMethod;
+
+import java.lang.reflect.Method;
+
+/**
+ * Query method that also tells whether it opted in to a Datastore projection query with
+ * {@link ProjectionQuery}.
+ */
+public class GcloudDatastoreQueryMethod extends QueryMethod {
+
+    private final boolean projectionQuery;
+
+    public GcloudDatastoreQueryMethod(Method method, RepositoryMetadata metadata, ProjectionFactory factory) {
+        super(method, metadata, factory);
+        this.projectionQuery = AnnotatedElementUtils.hasAnnotation(method, ProjectionQuery.class);
+    }
+
+    public boolean isProjectionQuery() {
+        return projectionQuery;
+    }
+}
@@ -0,0 +1,107 @@
+package org.springframework.data.gclouddatastore.repository.query;
+
+import com.google.cloud.datastore.DatastoreOptions;
+import com.google.cloud.datastore.Key;
+import com.google.cloud.datastore.QueryResults;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
+import org.springframework.core.convert.ConversionService;
+import org.springframework.core.convert.support.DefaultConversionService;
+import org.springframework.data.gclouddatastore.repository.EntityMapper;
+import org.springframework.data.repository.query.QueryMethod;
+import org.springframework.data.repository.query.parser.PartTree;
+import org.springframework.lang.Nullable;
+import org.springframework.util.ClassUtils;
+
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.StreamSupport;
+
+/**
+ * Derived query that only needs the keys of the matching entities: {@code existsBy...},
+ * {@code countBy...} and {@code deleteBy...} methods, and methods returning a
+ * {@code List} or {@code Stream} of ids. Keys-only queries are billed as small
+ * operations and do not transfer the entities.
+ */
+public class KeysOnlyQuery extends AbstractGcloudDatastoreQuery {
+
+    private final Class<?> idType;
+    private final Consumer<List<Key>> deleter;
+    private final ConversionService conversionService = DefaultConversionService.getSharedInstance();
+
+    public KeysOnlyQuery(QueryMethod queryMethod, DatastoreOptions datastoreOptions, EntityMapper<?> mapper,
+            Class<?> idType, Consumer<List<Key>> deleter) {
+        super(queryMethod, datastoreOptions, mapper);
+        this.idType = idType;
+        this.deleter = deleter;
+
+        if (getTree().isDelete() && !isVoidOrNumber(queryMethod.getReturnedObjectType())) {
+            throw new UnsupportedOperationException(
+                "Delete query method must return void or the number of deleted entities.");
+        }
+    }
+
+    /**
+     * Returns whether the given query method can be answered from the keys of the
+     * matching entities alone.
+     */
+    public static boolean isKeysOnly(QueryMethod queryMethod, Class<?> idType) {
+        PartTree tree = new PartTree(queryMethod.getName(), queryMethod.getEntityInformation().getJavaType());
+        if (tree.isExistsProjection() || tree.isCountProjection() || tree.isDelete()) {
+            return true;
+        }
+
+        Class<?> returnedType = queryMethod.getReturnedObjectType();
+        return (queryMethod.isCollectionQuery() || queryMethod.isStreamQuery())
+            && returnedType != queryMethod.getEntityInformation().getJavaType()
+            && ClassUtils.resolvePrimitiveIfNecessary(returnedType) == ClassUtils.resolvePrimitiveIfNecessary(idType);
+    }
+
+    private static boolean isVoidOrNumber(Class<?> type) {
+        Class<?> boxed = ClassUtils.resolvePrimitiveIfNecessary(type);
+        return boxed == Void.class || Number.class.isAssignableFrom(boxed);
+    }
+
+    @Nullable
+    @Override
+    public Object execute(Object[] parameters) {
+        PartTree tree = getTree();
+        if (tree.isExistsProjection()) {
+            return runKeyQuery(parameters, 1).hasNext();
+        }
+
+        QueryResults<Key> results = runKeyQuery(parameters, tree.getMaxResults());
+        if (tree.isCountProjection()) {
+            return convert(Iterators.size(results));
+        }
+        else if (tree.isDelete()) {
+            List<Key> keys = Lists.newArrayList(results);
+            if (!keys.isEmpty()) {
+                deleter.accept(keys);
+            }
+            return convert(keys.size());
+        }
+        else if (getQueryMethod().isStreamQuery()) {
+            return StreamSupport.stream(
+                Spliterators.spliteratorUnknownSize(Iterators.transform(results, this::toId), Spliterator.ORDERED),
+                false);
+        }
+        else {
+            return Lists.newArrayList(Iterators.transform(results, this::toId));
+        }
+    }
+
+    private Object convert(int count) {
+        Class<?> type = getQueryMethod().getReturnedObjectType();
+        if (ClassUtils.resolvePrimitiveIfNecessary(type) == Void.class) {
+            return null;
+        }
+        return conversionService.convert(count, ClassUtils.resolvePrimitiveIfNecessary(type));
+    }
+
+    private Object toId(Key key) {
+        return conversionService.convert(key.getNameOrId(), ClassUtils.resolvePrimitiveIfNecessary(idType));
+    }
+}
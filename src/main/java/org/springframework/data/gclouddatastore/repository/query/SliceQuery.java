@@ -0,0 +1,29 @@
+package org.springframework.data.gclouddatastore.repository.query;
+
+import com.google.cloud.datastore.DatastoreOptions;
+import org.springframework.data.gclouddatastore.repository.EntityMapper;
+import org.springframework.data.gclouddatastore.repository.EntityMappers;
+import org.springframework.data.repository.query.QueryMethod;
+import org.springframework.lang.Nullable;
+
+/**
+ * Derived query returning a {@link org.springframework.data.domain.Slice}, paged with
+ * query cursors, see {@link org.springframework.data.gclouddatastore.repository.CursorPageable}.
+ */
+public class SliceQuery extends AbstractGcloudDatastoreQuery {
+
+    public SliceQuery(QueryMethod queryMethod, DatastoreOptions datastoreOptions) {
+        this(queryMethod, datastoreOptions, EntityMappers.getMapper(
+            queryMethod.getResultProcessor().getReturnedType().getDomainType()));
+    }
+
+    public SliceQuery(QueryMethod queryMethod, DatastoreOptions datastoreOptions, EntityMapper<?> mapper) {
+        super(queryMethod, datastoreOptions, mapper);
+    }
+
+    @Nullable
+    @Override
+    public Object execute(Object[] parameters) {
+        return getResultProcessor().processResult(runSliceQuery(parameters));
+    }
+}
@@ -16,7 +16,10 @@
 
 package org.springframework.data.gclouddatasource.testing;
 
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.gclouddatastore.GcloudDatastoreRepository;
+import org.springframework.data.gclouddatastore.repository.ProjectionQuery;
 
 import java.util.List;
 import java.util.Optional;
@@ -51,4 +54,28 @@ public interface PersonRepository extends GcloudDatastoreRepository<Person, Long
 
 	Stream<Person> findByLastName(String lastName);
 
+	boolean existsByEmailAddress(String emailAddress);
+
+	long countByLastName(String lastName);
+
+	long deleteByLastName(String lastName);
+
+	List<Long> findIdsByFirstName(String firstName);
+
+	Slice<Person> findByFirstName(String firstName, Pageable pageable);
+
+	// Reads whole entities and projects them
+	List<Names> findNamesByCitizen(boolean citizen);
+
+	// Reads only the projected properties from the indexes
+	@ProjectionQuery
+	List<Names> findProjectedNamesByCitizen(boolean citizen);
+
+	interface Names {
+
+		String getFirstName();
+
+		String getLastName();
+	}
+
 }
@@ -0,0 +1,247 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.data.gclouddatastore.processor;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import com.google.cloud.datastore.FullEntity;
+import com.google.cloud.datastore.IncompleteKey;
+import com.google.cloud.datastore.Key;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import org.springframework.beans.BeanWrapper;
+import org.springframework.beans.PropertyAccessorFactory;
+import org.springframework.data.gclouddatastore.repository.EntityMapper;
+import org.springframework.data.gclouddatastore.repository.EntityMappers;
+
+public class EntityMapperProcessorTests {
+
+	private static final String ACCOUNT_SOURCE = String.join("\n",
+			"package sample;",
+			"",
+			"import java.util.List;",
+			"import org.springframework.data.annotation.Id;",
+			"import org.springframework.data.gclouddatastore.repository.Unindexed;",
+			"",
+			"public class Account {",
+			"	@Id private long id;",
+			"	private String name;",
+			"	private int age;",
+			"	private Double score;",
+			"	private byte[] data;",
+			"	private List<String> tags;",
+			"	@Unindexed private String note;",
+			"	private transient String cache;",
+			"	private String secret;",
+			"	public long getId() { return id; }",
+			"	public void setId(long id) { this.id = id; }",
+			"	public String getName() { return name; }",
+			"	public void setName(String name) { this.name = name; }",
+			"	public int getAge() { return age; }",
+			"	public void setAge(int age) { this.age = age; }",
+			"	public Double getScore() { return score; }",
+			"	public void setScore(Double score) { this.score = score; }",
+			"	public byte[] getData() { return data; }",
+			"	public void setData(byte[] data) { this.data = data; }",
+			"	public List<String> getTags() { return tags; }",
+			"	public void setTags(List<String> tags) { this.tags = tags; }",
+			"	public String getNote() { return note; }",
+			"	public void setNote(String note) { this.note = note; }",
+			"	public String getCache() { return cache; }",
+			"	public void setCache(String cache) { this.cache = cache; }",
+			"	public String getDisplayName() { return name + \" (\" + age + \")\"; }",
+			"}");
+
+	private static final String SNAPSHOT_SOURCE = String.join("\n",
+			"package sample;",
+			"",
+			"import org.springframework.data.annotation.Id;",
+			"",
+			"public class Snapshot {",
+			"	@Id private final long id;",
+			"	public Snapshot(long id) { this.id = id; }",
+			"	public long getId() { return id; }",
+			"}");
+
+	private static final String UNINDEXED_BASE_SOURCE = String.join("\n",
+			"package sample;",
+			"",
+			"import org.springframework.data.gclouddatastore.repository.Unindexed;",
+			"",
+			"@Unindexed",
+			"public abstract class UnindexedBase {",
+			"	private String description;",
+			"	public String getDescription() { return description; }",
+			"	public void setDescription(String description) { this.description = description; }",
+			"}");
+
+	private static final String DOCUMENT_SOURCE = String.join("\n",
+			"package sample;",
+			"",
+			"import org.springframework.data.annotation.Id;",
+			"",
+			"public class Document extends UnindexedBase {",
+			"	@Id private long id;",
+			"	private String title;",
+			"	public long getId() { return id; }",
+			"	public void setId(long id) { this.id = id; }",
+			"	public String getTitle() { return title; }",
+			"	public void setTitle(String title) { this.title = title; }",
+			"}");
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private JavaCompiler compiler;
+
+	private File sourceDir;
+
+	@Before
+	public void setUp() throws Exception {
+		this.compiler = ToolProvider.getSystemJavaCompiler();
+		Assume.assumeNotNull(this.compiler);
+
+		this.sourceDir = this.temporaryFolder.newFolder("src");
+		write("sample/Account.java", ACCOUNT_SOURCE);
+		write("sample/Snapshot.java", SNAPSHOT_SOURCE);
+		write("sample/UnindexedBase.java", UNINDEXED_BASE_SOURCE);
+		write("sample/Document.java", DOCUMENT_SOURCE);
+	}
+
+	private void write(String path, String source) throws IOException {
+		File file = new File(this.sourceDir, path);
+		file.getParentFile().mkdirs();
+		Files.write(file.toPath(), source.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private ClassLoader compile(String name, String... options) throws Exception {
+		File outputDir = this.temporaryFolder.newFolder(name);
+		List<String> arguments = new ArrayList<>(Arrays.asList(
+				"-classpath", System.getProperty("java.class.path"),
+				"-d", outputDir.getPath(), "-s", outputDir.getPath()));
+		arguments.addAll(Arrays.asList(options));
+		arguments.add(new File(this.sourceDir, "sample/Account.java").getPath());
+		arguments.add(new File(this.sourceDir, "sample/Snapshot.java").getPath());
+		arguments.add(new File(this.sourceDir, "sample/UnindexedBase.java").getPath());
+		arguments.add(new File(this.sourceDir, "sample/Document.java").getPath());
+
+		int status = this.compiler.run(null, null, null, arguments.toArray(new String[0]));
+		Assert.assertEquals(0, status);
+		return new URLClassLoader(new URL[] { outputDir.toURI().toURL() }, getClass().getClassLoader());
+	}
+
+	private static Object newAccount(Class<?> type) throws Exception {
+		BeanWrapper account = PropertyAccessorFactory.forBeanPropertyAccess(type.newInstance());
+		account.setPropertyValue("id", 1L);
+		account.setPropertyValue("name", "John");
+		account.setPropertyValue("age", 42);
+		account.setPropertyValue("data", new byte[] { 1, 2, 3 });
+		account.setPropertyValue("tags", Arrays.asList("a", "b"));
+		account.setPropertyValue("note", "unindexed");
+		account.setPropertyValue("cache", "cached");
+		return account.getWrappedInstance();
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> EntityMapper<Object> getMapper(Class<T> type) {
+		return (EntityMapper<Object>) EntityMappers.getMapper(type);
+	}
+
+	@Test
+	public void testGeneratedMapper() throws Exception {
+		// Setup
+		ClassLoader generated = compile("generated",
+				"-processor", EntityMapperProcessor.class.getName());
+		ClassLoader reflective = compile("reflective", "-proc:none");
+		Class<?> generatedType = generated.loadClass("sample.Account");
+		Class<?> reflectiveType = reflective.loadClass("sample.Account");
+		Key key = Key.newBuilder("project", "Account", 1).build();
+
+		// Exercise
+		EntityMapper<Object> generatedMapper = getMapper(generatedType);
+		EntityMapper<Object> reflectiveMapper = getMapper(reflectiveType);
+		FullEntity<? extends IncompleteKey> generatedEntity = generatedMapper.toEntity(newAccount(generatedType), key);
+		FullEntity<? extends IncompleteKey> reflectiveEntity = reflectiveMapper.toEntity(newAccount(reflectiveType), key);
+		Object roundTripped = generatedMapper.toObject(reflectiveEntity);
+
+		// Verify
+		Assert.assertEquals(EntityMappers.getMapperClassName("sample.Account"),
+				generatedMapper.getClass().getName());
+		Assert.assertNotEquals(EntityMappers.getMapperClassName("sample.Account"),
+				reflectiveMapper.getClass().getName());
+		Assert.assertEquals(reflectiveEntity, generatedEntity);
+		Assert.assertFalse(generatedEntity.contains("secret"));
+		Assert.assertTrue(generatedEntity.contains("displayName"));
+		Assert.assertEquals(reflectiveEntity, generatedMapper.toEntity(roundTripped, key));
+	}
+
+	@Test
+	public void testSkippedClass() throws Exception {
+		// Setup
+		ClassLoader generated = compile("generated",
+				"-processor", EntityMapperProcessor.class.getName());
+		Class<?> type = generated.loadClass("sample.Snapshot");
+
+		// Exercise
+		EntityMapper<Object> mapper = getMapper(type);
+
+		// Verify
+		Assert.assertFalse(new File(this.temporaryFolder.getRoot(), "generated/sample/Snapshot"
+				+ EntityMappers.MAPPER_SUFFIX + ".java").exists());
+		Assert.assertNotEquals(EntityMappers.getMapperClassName("sample.Snapshot"),
+				mapper.getClass().getName());
+	}
+
+	@Test
+	public void testInheritedMappingAnnotation() throws Exception {
+		// Setup
+		ClassLoader generated = compile("generated",
+				"-processor", EntityMapperProcessor.class.getName());
+		Class<?> type = generated.loadClass("sample.Document");
+		BeanWrapper document = PropertyAccessorFactory.forBeanPropertyAccess(type.newInstance());
+		document.setPropertyValue("id", 1L);
+		document.setPropertyValue("title", "Title");
+		document.setPropertyValue("description", "Description");
+
+		// Exercise
+		EntityMapper<Object> mapper = getMapper(type);
+		FullEntity<? extends IncompleteKey> entity = mapper.toEntity(document.getWrappedInstance(),
+				Key.newBuilder("project", "Document", 1).build());
+
+		// Verify
+		Assert.assertFalse(new File(this.temporaryFolder.getRoot(), "generated/sample/Document"
+				+ EntityMappers.MAPPER_SUFFIX + ".java").exists());
+		Assert.assertTrue(entity.getValue("title").excludeFromIndexes());
+		Assert.assertTrue(entity.getValue("description").excludeFromIndexes());
+	}
+}
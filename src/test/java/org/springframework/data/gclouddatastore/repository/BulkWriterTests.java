@@ -0,0 +1,104 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.data.gclouddatastore.repository;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import com.google.cloud.datastore.PathElement;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class BulkWriterTests {
+
+	@Test
+	public void testWrite() {
+		// Setup
+		List<Integer> entities = IntStream.range(0, 1050).boxed().collect(Collectors.toList());
+		AtomicLong completed = new AtomicLong();
+		AtomicLong failed = new AtomicLong();
+		BulkWriteOptions options = BulkWriteOptions.defaults().withBatchSize(100).withMaxConcurrentBatches(3)
+				.withListener((completedCount, failedCount) -> {
+					completed.accumulateAndGet(completedCount, Math::max);
+					failed.accumulateAndGet(failedCount, Math::max);
+				});
+		AtomicInteger concurrent = new AtomicInteger();
+		AtomicInteger maxConcurrent = new AtomicInteger();
+		List<PathElement> ancestors = new ArrayList<>();
+
+		// Exercise
+		BulkWriteResult result;
+		try (Context context = Context.with(PathElement.of("Kind", 1))) {
+			result = BulkWriter.write(entities.iterator(), options, (batch, rejected) -> {
+				maxConcurrent.accumulateAndGet(concurrent.incrementAndGet(), Math::max);
+				try {
+					synchronized (ancestors) {
+						ancestors.addAll(Context.getAncestors());
+					}
+					if (batch.contains(500)) {
+						throw new IllegalStateException("failure");
+					}
+					return batch.size() - 1;
+				}
+				finally {
+					concurrent.decrementAndGet();
+				}
+			});
+		}
+
+		// Verify
+		Assert.assertEquals(1050 - 100 - 10, result.getWrittenCount());
+		Assert.assertEquals(10, result.getSkippedCount());
+		Assert.assertEquals(1, result.getFailures().size());
+		Assert.assertEquals(100, result.getFailures().get(0).getEntities().size());
+		Assert.assertTrue(maxConcurrent.get() <= 3);
+		Assert.assertEquals(11, ancestors.size());
+		Assert.assertEquals(950, completed.get());
+		Assert.assertEquals(100, failed.get());
+		Assert.assertTrue(ancestors.stream().allMatch(PathElement.of("Kind", 1)::equals));
+	}
+
+	@Test
+	public void testWriteRejected() {
+		// Setup
+		List<Integer> entities = IntStream.range(0, 300).boxed().collect(Collectors.toList());
+		AtomicLong failed = new AtomicLong();
+		BulkWriteOptions options = BulkWriteOptions.defaults().withBatchSize(100).withMaxConcurrentBatches(1)
+				.withListener((completedCount, failedCount) -> failed.accumulateAndGet(failedCount, Math::max));
+
+		// Exercise
+		BulkWriteResult result = BulkWriter.write(entities.iterator(), options, (batch, rejected) -> {
+			if (batch.contains(150)) {
+				rejected.accept(new BulkWriteResult.Failure(Collections.singletonList(150),
+						new MarshallingFailureException("too large")));
+				return batch.size() - 1;
+			}
+			return batch.size();
+		});
+
+		// Verify
+		Assert.assertEquals(299, result.getWrittenCount());
+		Assert.assertEquals(0, result.getSkippedCount());
+		Assert.assertEquals(1, result.getFailures().size());
+		Assert.assertEquals(Collections.singletonList(150), result.getFailures().get(0).getEntities());
+		Assert.assertEquals(1, failed.get());
+	}
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.data.gclouddatastore.repository;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import com.google.cloud.datastore.Cursor;
+import com.google.cloud.datastore.EntityQuery;
+import com.google.cloud.datastore.Query;
+import com.google.cloud.datastore.QueryResults;
+import org.junit.Test;
+
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class CursorPageableTests {
+
+	private static Cursor cursor(int position) {
+		return Cursor.copyFrom(new byte[] { (byte) position });
+	}
+
+	private static QueryResults<Integer> results(Integer... values) {
+		Iterator<Integer> iterator = Arrays.asList(values).iterator();
+		return new QueryResults<Integer>() {
+
+			private int position;
+
+			@Override
+			public boolean hasNext() {
+				return iterator.hasNext();
+			}
+
+			@Override
+			public Integer next() {
+				this.position++;
+				return iterator.next();
+			}
+
+			@Override
+			public Class<?> getResultClass() {
+				return Integer.class;
+			}
+
+			@Override
+			public Cursor getCursorAfter() {
+				return cursor(this.position);
+			}
+		};
+	}
+
+	@Test
+	public void testApplyToCursor() throws Exception {
+		// Setup
+		Pageable pageable = CursorPageable.of(3, 10, Sort.unsorted(), cursor(30).toUrlSafe());
+		EntityQuery.Builder queryBuilder = Query.newEntityQueryBuilder();
+
+		// Exercise
+		CursorPageable.applyTo(pageable, queryBuilder);
+
+		// Verify
+		assertEquals(Query.newEntityQueryBuilder().setStartCursor(cursor(30)).setLimit(11).build(),
+				queryBuilder.build());
+	}
+
+	@Test
+	public void testApplyToOffset() throws Exception {
+		// Setup
+		Pageable pageable = PageRequest.of(3, 10);
+		EntityQuery.Builder queryBuilder = Query.newEntityQueryBuilder();
+
+		// Exercise
+		CursorPageable.applyTo(pageable, queryBuilder);
+
+		// Verify
+		assertEquals(Query.newEntityQueryBuilder().setOffset(30).setLimit(11).build(),
+				queryBuilder.build());
+	}
+
+	@Test
+	public void testToSlice() throws Exception {
+		// Setup
+		Pageable pageable = CursorPageable.of(2, Sort.by("name"));
+
+		// Exercise
+		Slice<String> slice = CursorPageable.toSlice(pageable, results(1, 2, 3), String::valueOf);
+
+		// Verify
+		assertEquals(Arrays.asList("1", "2"), slice.getContent());
+		assertTrue(slice.hasNext());
+		CursorPageable next = (CursorPageable) slice.nextPageable();
+		assertEquals(1, next.getPageNumber());
+		assertEquals(Sort.by("name"), next.getSort());
+		assertEquals(cursor(2), next.getCursor());
+	}
+
+	@Test
+	public void testToSliceLast() throws Exception {
+		// Setup
+		Pageable pageable = CursorPageable.of(2);
+
+		// Exercise
+		Slice<Integer> slice = CursorPageable.toSlice(pageable, results(1), Integer::valueOf);
+
+		// Verify
+		List<Integer> expected = Arrays.asList(1);
+		assertEquals(expected, slice.getContent());
+		assertFalse(slice.hasNext());
+		assertNull(((CursorPageable) slice.getPageable()).getCursor());
+	}
+}
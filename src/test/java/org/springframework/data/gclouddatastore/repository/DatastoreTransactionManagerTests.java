@@ -0,0 +1,64 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.data.gclouddatastore.repository;
+
+import com.google.cloud.datastore.DatastoreOptions;
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.springframework.transaction.InvalidIsolationLevelException;
+import org.springframework.transaction.InvalidTimeoutException;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+public class DatastoreTransactionManagerTests {
+
+	private final DatastoreOptions datastoreOptions = DatastoreOptions.newBuilder()
+			.setProjectId("project")
+			.build();
+
+	@Test(expected = InvalidIsolationLevelException.class)
+	public void testBegin_Isolation() {
+		// Setup
+		DatastoreTransactionManager transactionManager = new DatastoreTransactionManager(this.datastoreOptions);
+		DefaultTransactionDefinition definition = new DefaultTransactionDefinition();
+		definition.setIsolationLevel(TransactionDefinition.ISOLATION_READ_COMMITTED);
+
+		// Exercise
+		transactionManager.getTransaction(definition);
+	}
+
+	@Test
+	public void testBegin_Timeout() {
+		// Setup
+		DatastoreTransactionManager transactionManager = new DatastoreTransactionManager(this.datastoreOptions);
+		DefaultTransactionDefinition definition = new DefaultTransactionDefinition();
+		definition.setTimeout(10);
+
+		// Exercise
+		try {
+			transactionManager.getTransaction(definition);
+			Assert.fail("Expected InvalidTimeoutException");
+		}
+		catch (InvalidTimeoutException e) {
+			// Verify
+			Assert.assertEquals(10, e.getTimeout());
+			Assert.assertFalse(TransactionSynchronizationManager.hasResource(this.datastoreOptions));
+		}
+	}
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.data.gclouddatastore.repository;
+
+import java.util.Arrays;
+
+import com.google.cloud.datastore.Entity;
+import com.google.cloud.datastore.Key;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.springframework.data.annotation.Id;
+
+public class DirtyTrackerTests {
+
+	@Data
+	@NoArgsConstructor
+	public static class TestBean {
+		@Id
+		long id;
+		String string;
+		int primitiveInt;
+	}
+
+	@Test
+	public void testIsDirty() {
+		// Setup
+		Key key = Key.newBuilder("project", "kind", 1).build();
+		Entity entity = Entity.newBuilder(key).set("id", 1).set("primitiveInt", 2).set("string", "string").build();
+		TestBean bean = Unmarshaller.unmarshal(entity, TestBean.class);
+		DirtyTracker tracker = new DirtyTracker();
+		tracker.track(bean, DirtyTracker.fingerprint(entity));
+
+		// Exercise, Verify
+		Assert.assertFalse(tracker.isDirty(bean, DirtyTracker.fingerprint(Marshaller.toEntity(bean, key))));
+		bean.string = "changed";
+		Assert.assertTrue(tracker.isDirty(bean, DirtyTracker.fingerprint(Marshaller.toEntity(bean, key))));
+		Assert.assertTrue(tracker.isDirty(new TestBean(), DirtyTracker.fingerprint(entity)));
+	}
+
+	@Test
+	public void testFingerprint_PropertyOrder() {
+		// Setup
+		com.google.datastore.v1.Entity entity1 = com.google.datastore.v1.Entity.newBuilder()
+				.putProperties("a", ProtoEntityCodec.toValue(Marshaller.toDatastoreValue(1L)))
+				.putProperties("b", ProtoEntityCodec.toValue(Marshaller.toDatastoreValue(Arrays.asList("x", "y"))))
+				.build();
+		com.google.datastore.v1.Entity entity2 = com.google.datastore.v1.Entity.newBuilder()
+				.putProperties("b", ProtoEntityCodec.toValue(Marshaller.toDatastoreValue(Arrays.asList("x", "y"))))
+				.putProperties("a", ProtoEntityCodec.toValue(Marshaller.toDatastoreValue(1L)))
+				.build();
+
+		// Exercise, Verify
+		Assert.assertEquals(DirtyTracker.fingerprint(entity1), DirtyTracker.fingerprint(entity2));
+	}
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.data.gclouddatastore.repository;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import com.google.cloud.datastore.Key;
+import com.google.cloud.datastore.PathElement;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class EntityCounterTests {
+
+	@Test
+	public void testInvalidate() {
+		// Setup
+		EntityCounter counter = new EntityCounter(600);
+		counter.set(Collections.emptyList(), 10);
+		counter.set(Arrays.asList(PathElement.of("Parent", 1)), 5);
+		counter.set(Arrays.asList(PathElement.of("Parent", 2)), 3);
+		Key child = Key.newBuilder("project", "Kind", 1).addAncestor(PathElement.of("Parent", 1)).build();
+
+		// Exercise
+		counter.invalidate(Collections.singletonList(child));
+
+		// Verify
+		Assert.assertNull(counter.get(Collections.emptyList()));
+		Assert.assertNull(counter.get(Arrays.asList(PathElement.of("Parent", 1))));
+		Assert.assertEquals(Long.valueOf(3), counter.get(Arrays.asList(PathElement.of("Parent", 2))));
+	}
+
+	@Test
+	public void testGet_Expired() {
+		// Setup
+		EntityCounter counter = new EntityCounter(0);
+		counter.set(Collections.emptyList(), 10);
+
+		// Exercise, Verify
+		Assert.assertNull(counter.get(Collections.emptyList()));
+		Assert.assertNull(new EntityCounter(600).get(Collections.emptyList()));
+	}
+}
@@ -13,4 +13,9 @@ public class IntegrationTestConfig {
     public DatastoreOptions datastoreOptions() {
         return DatastoreOptions.getDefaultInstance();
     }
+
+    @Bean
+    public DatastoreTransactionManager transactionManager(DatastoreOptions datastoreOptions) {
+        return new DatastoreTransactionManager(datastoreOptions);
+    }
 }
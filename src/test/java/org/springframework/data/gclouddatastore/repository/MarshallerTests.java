@@ -0,0 +1,368 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.data.gclouddatastore.repository;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.cloud.Timestamp;
+import com.google.cloud.datastore.Blob;
+import com.google.cloud.datastore.EntityValue;
+import com.google.cloud.datastore.FullEntity;
+import com.google.cloud.datastore.IncompleteKey;
+import com.google.cloud.datastore.ListValue;
+import com.google.cloud.datastore.LongValue;
+import com.google.cloud.datastore.NullValue;
+import com.google.cloud.datastore.StringValue;
+import com.google.cloud.datastore.Value;
+import com.google.cloud.datastore.ValueType;
+import com.google.common.base.Strings;
+import com.google.common.io.ByteStreams;
+import com.google.protobuf.ByteString;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.springframework.data.annotation.Id;
+
+public class MarshallerTests {
+
+	@Data
+	@NoArgsConstructor
+	public static class TestIndexBean {
+		@Id
+		long id;
+		String shortString;
+		String longString;
+		byte[] bytes;
+		@Unindexed
+		String unindexed;
+		@Unindexed
+		List<String> unindexedList;
+		@Unindexed
+		Map<String, Object> unindexedMap;
+	}
+
+	@Data
+	@NoArgsConstructor
+	@Unindexed
+	public static class TestUnindexedBean {
+		@Id
+		@Unindexed(false)
+		long id;
+		String string;
+	}
+
+	@Data
+	@NoArgsConstructor
+	public static class TestCompressedBean {
+		@Id
+		long id;
+		@Compressed
+		String large;
+		@Compressed
+		String small;
+		@Compressed(codec = Compressed.Codec.GZIP, threshold = 0)
+		byte[] bytes;
+		@Compressed
+		byte[] smallBytes;
+	}
+
+	@Data
+	@NoArgsConstructor
+	public static class TestBufferBean {
+		@Id
+		long id;
+		ByteBuffer byteBuffer;
+		InputStream inputStream;
+		Blob blob;
+		ByteString byteString;
+	}
+
+	@Data
+	@NoArgsConstructor
+	public static class TestArrayBean {
+		@Id
+		long id;
+		long[] longs;
+		int[] ints;
+		double[] doubles;
+		float[] floats;
+		boolean[] booleans;
+		String[] strings;
+	}
+
+	@Data
+	@NoArgsConstructor
+	public static class TestEmbeddedBean {
+		@Id
+		long id;
+		@Embedded(storage = Embedded.Storage.BLOB)
+		TestArrayBean arrays;
+		@Embedded(storage = Embedded.Storage.BLOB)
+		Map<String, Object> map;
+		@Embedded(storage = Embedded.Storage.BLOB)
+		List<Object> list;
+	}
+
+	@Data
+	@NoArgsConstructor
+	public static class TestTemporalBean {
+		@Id
+		long id;
+		Instant instant;
+		OffsetDateTime offsetDateTime;
+		ZonedDateTime zonedDateTime;
+		LocalDateTime localDateTime;
+		LocalDate localDate;
+	}
+
+	@Test
+	public void testToEntity_Indexes() {
+		// Setup
+		TestIndexBean bean = new TestIndexBean();
+		bean.shortString = "short";
+		bean.longString = Strings.repeat("あ", 501);
+		bean.bytes = new byte[] { 1, 2, 3 };
+		bean.unindexed = "unindexed";
+		bean.unindexedList = Arrays.asList("a", "b");
+		bean.unindexedMap = Collections.singletonMap("key", "value");
+
+		// Exercise
+		FullEntity<? extends IncompleteKey> entity = Marshaller.toEntity(bean, null);
+
+		// Verify
+		Assert.assertFalse(entity.getValue("id").excludeFromIndexes());
+		Assert.assertFalse(entity.getValue("shortString").excludeFromIndexes());
+		Assert.assertTrue(entity.getValue("longString").excludeFromIndexes());
+		Assert.assertTrue(entity.getValue("bytes").excludeFromIndexes());
+		Assert.assertTrue(entity.getValue("unindexed").excludeFromIndexes());
+		ListValue list = entity.getValue("unindexedList");
+		Assert.assertFalse(list.excludeFromIndexes());
+		for (Value<?> element : list.get()) {
+			Assert.assertTrue(element.excludeFromIndexes());
+		}
+		EntityValue map = entity.getValue("unindexedMap");
+		Assert.assertTrue(map.excludeFromIndexes());
+		Assert.assertTrue(map.get().getValue("key").excludeFromIndexes());
+	}
+
+	@Test
+	public void testToEntity_UnindexedClass() {
+		// Setup
+		TestUnindexedBean bean = new TestUnindexedBean();
+		bean.id = 1;
+		bean.string = "string";
+
+		// Exercise
+		FullEntity<? extends IncompleteKey> entity = Marshaller.toEntity(bean, null);
+
+		// Verify
+		Assert.assertFalse(entity.getValue("id").excludeFromIndexes());
+		Assert.assertTrue(entity.getValue("string").excludeFromIndexes());
+	}
+
+	@Test
+	public void testToEntity_Compressed() {
+		// Setup
+		TestCompressedBean bean = new TestCompressedBean();
+		bean.large = Strings.repeat("{\"key\":\"value\"}", 100);
+		bean.small = "small";
+		bean.bytes = new byte[2048];
+		bean.smallBytes = new byte[] { 1, 2, 3 };
+
+		// Exercise
+		FullEntity<? extends IncompleteKey> entity = Marshaller.toEntity(bean, null);
+		TestCompressedBean unmarshalled = Unmarshaller.unmarshal(entity, TestCompressedBean.class);
+
+		// Verify
+		Assert.assertEquals(ValueType.BLOB, entity.getValue("large").getType());
+		Assert.assertTrue(entity.getBlob("large").getLength() < bean.large.length());
+		Assert.assertEquals(ValueType.STRING, entity.getValue("small").getType());
+		Assert.assertTrue(entity.getBlob("bytes").getLength() < bean.bytes.length);
+		Assert.assertEquals(bean.smallBytes.length + Compression.HEADER_BYTES,
+				entity.getBlob("smallBytes").getLength());
+		Assert.assertEquals(bean, unmarshalled);
+	}
+
+	@Test
+	public void testUnmarshal_LegacyUncompressed() {
+		// Setup
+		byte[] bytes = { 0, 1, 2, 3 };
+		byte[] markerBytes = { (byte) 0xC2, 5, 6, 7 };
+		byte[] headerBytes = { (byte) 0xC2, 1, 1, (byte) 0xFF, (byte) 0xFF };
+		FullEntity<?> entity = FullEntity.newBuilder()
+				.set("bytes", Blob.copyFrom(bytes))
+				.set("smallBytes", Blob.copyFrom(new byte[0]))
+				.build();
+		FullEntity<?> markerEntity = FullEntity.newBuilder()
+				.set("bytes", Blob.copyFrom(markerBytes))
+				.set("smallBytes", Blob.copyFrom(headerBytes))
+				.set("large", "legacy")
+				.build();
+
+		// Exercise
+		TestCompressedBean bean = Unmarshaller.unmarshal(entity, TestCompressedBean.class);
+		TestCompressedBean markerBean = Unmarshaller.unmarshal(markerEntity, TestCompressedBean.class);
+
+		// Verify
+		Assert.assertArrayEquals(bytes, bean.bytes);
+		Assert.assertArrayEquals(new byte[0], bean.smallBytes);
+		Assert.assertArrayEquals(markerBytes, markerBean.bytes);
+		Assert.assertArrayEquals(headerBytes, markerBean.smallBytes);
+		Assert.assertEquals("legacy", markerBean.large);
+	}
+
+	@Test
+	public void testToEntity_Buffers() throws Exception {
+		// Setup
+		TestBufferBean bean = new TestBufferBean();
+		bean.byteBuffer = ByteBuffer.wrap(new byte[] { 1, 2 });
+		bean.inputStream = new ByteArrayInputStream(new byte[] { 3, 4 });
+		bean.blob = Blob.copyFrom(new byte[] { 5, 6 });
+		bean.byteString = ByteString.copyFrom(new byte[] { 7, 8 });
+
+		// Exercise
+		FullEntity<? extends IncompleteKey> entity = Marshaller.toEntity(bean, null);
+		TestBufferBean unmarshalled = Unmarshaller.unmarshal(entity, TestBufferBean.class);
+
+		// Verify
+		Assert.assertEquals(Blob.copyFrom(new byte[] { 1, 2 }), entity.getBlob("byteBuffer"));
+		Assert.assertEquals(Blob.copyFrom(new byte[] { 3, 4 }), entity.getBlob("inputStream"));
+		Assert.assertEquals(ByteBuffer.wrap(new byte[] { 1, 2 }), unmarshalled.byteBuffer);
+		Assert.assertTrue(unmarshalled.byteBuffer.isReadOnly());
+		Assert.assertArrayEquals(new byte[] { 3, 4 }, ByteStreams.toByteArray(unmarshalled.inputStream));
+		Assert.assertEquals(bean.blob, unmarshalled.blob);
+		Assert.assertEquals(bean.byteString, unmarshalled.byteString);
+	}
+
+	@Test
+	public void testToEntity_InputStreamTwice() throws Exception {
+		// Setup
+		TestBufferBean bean = new TestBufferBean();
+		bean.inputStream = new ByteArrayInputStream(new byte[] { 3, 4 });
+		Marshaller.toEntity(bean, null);
+
+		// Exercise
+		try {
+			Marshaller.toEntity(bean, null);
+			Assert.fail("Expected MarshallingFailureException");
+		}
+		catch (MarshallingFailureException e) {
+			// Verify
+			Assert.assertTrue(e.getMessage().contains("only be written once"));
+		}
+	}
+
+	@Test
+	public void testToEntity_ReadInputStreamTwice() throws Exception {
+		// Setup
+		TestBufferBean bean = new TestBufferBean();
+		bean.inputStream = new ByteArrayInputStream(new byte[] { 3, 4 });
+		TestBufferBean unmarshalled = Unmarshaller.unmarshal(Marshaller.toEntity(bean, null), TestBufferBean.class);
+		ByteStreams.toByteArray(unmarshalled.inputStream);
+
+		// Exercise
+		FullEntity<? extends IncompleteKey> first = Marshaller.toEntity(unmarshalled, null);
+		FullEntity<? extends IncompleteKey> second = Marshaller.toEntity(unmarshalled, null);
+
+		// Verify
+		Assert.assertEquals(Blob.copyFrom(new byte[] { 3, 4 }), first.getBlob("inputStream"));
+		Assert.assertEquals(Blob.copyFrom(new byte[] { 3, 4 }), second.getBlob("inputStream"));
+	}
+
+	@Test
+	public void testToEntity_Arrays() {
+		// Setup
+		TestArrayBean bean = new TestArrayBean();
+		bean.longs = new long[] { 1, 2 };
+		bean.ints = new int[] { 3 };
+		bean.doubles = new double[] { 4.5 };
+		bean.floats = new float[] { 6.5f };
+		bean.booleans = new boolean[] { true, false };
+		bean.strings = new String[] { "a", null };
+
+		// Exercise
+		FullEntity<? extends IncompleteKey> entity = Marshaller.toEntity(bean, null);
+		TestArrayBean unmarshalled = Unmarshaller.unmarshal(entity, TestArrayBean.class);
+
+		// Verify
+		Assert.assertEquals(Arrays.asList(LongValue.of(1), LongValue.of(2)), entity.getList("longs"));
+		Assert.assertEquals(Arrays.asList(StringValue.of("a"), NullValue.of()), entity.getList("strings"));
+		Assert.assertEquals(bean, unmarshalled);
+	}
+
+	@Test
+	public void testToEntity_EmbeddedBlob() {
+		// Setup
+		TestArrayBean arrays = new TestArrayBean();
+		arrays.longs = new long[] { 1, -2 };
+		arrays.strings = new String[] { "a", "b" };
+		TestEmbeddedBean bean = new TestEmbeddedBean();
+		bean.arrays = arrays;
+		bean.map = new HashMap<>();
+		bean.map.put("name", "value");
+		bean.map.put("nested", Collections.singletonMap("name", 1L));
+		bean.list = Arrays.asList(Collections.singletonMap("name", 2.5), Collections.singletonMap("name", true));
+
+		// Exercise
+		FullEntity<? extends IncompleteKey> entity = Marshaller.toEntity(bean, null);
+		TestEmbeddedBean unmarshalled = Unmarshaller.unmarshal(entity, TestEmbeddedBean.class);
+
+		// Verify
+		Assert.assertEquals(ValueType.BLOB, entity.getValue("arrays").getType());
+		Assert.assertTrue(entity.getValue("map").excludeFromIndexes());
+		Assert.assertTrue(unmarshalled.map instanceof LazyEntityMap);
+		Assert.assertEquals(bean, unmarshalled);
+	}
+
+	@Test
+	public void testToEntity_Timestamps() {
+		// Setup
+		Instant instant = Instant.parse("2017-07-09T12:34:56.123456Z");
+		TestTemporalBean bean = new TestTemporalBean();
+		bean.instant = instant;
+		bean.offsetDateTime = instant.atOffset(ZoneOffset.UTC);
+		bean.zonedDateTime = instant.atZone(ZoneOffset.UTC);
+		bean.localDateTime = LocalDateTime.ofInstant(instant, ZoneId.systemDefault());
+		bean.localDate = LocalDate.of(2017, 7, 9);
+
+		// Exercise
+		FullEntity<? extends IncompleteKey> entity = Marshaller.toEntity(bean, null);
+		TestTemporalBean unmarshalled = Unmarshaller.unmarshal(entity, TestTemporalBean.class);
+
+		// Verify
+		Assert.assertEquals(Timestamp.parseTimestamp("2017-07-09T12:34:56.123456Z"), entity.getTimestamp("instant"));
+		Assert.assertEquals(entity.getTimestamp("instant"), entity.getTimestamp("offsetDateTime"));
+		Assert.assertEquals(entity.getTimestamp("instant"), entity.getTimestamp("zonedDateTime"));
+		Assert.assertEquals(entity.getTimestamp("instant"), entity.getTimestamp("localDateTime"));
+		Assert.assertEquals(bean, unmarshalled);
+	}
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.data.gclouddatastore.repository;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import com.google.cloud.datastore.Cursor;
+import com.google.cloud.datastore.Key;
+import com.google.cloud.datastore.KeyQuery;
+import com.google.cloud.datastore.Query;
+import com.google.cloud.datastore.QueryResults;
+import org.junit.Test;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.SliceImpl;
+
+import static org.junit.Assert.assertEquals;
+
+public class PageTotalsTests {
+
+	private final KeyQuery countQuery = Query.newKeyQueryBuilder().setKind("Person").build();
+
+	private final AtomicInteger countQueries = new AtomicInteger();
+
+	private final Function<KeyQuery, QueryResults<Key>> runner = query -> {
+		this.countQueries.incrementAndGet();
+		Iterator<Key> keys = Collections.nCopies(7, Key.newBuilder("project", "Person", 1).build()).iterator();
+		return new QueryResults<Key>() {
+
+			@Override
+			public boolean hasNext() {
+				return keys.hasNext();
+			}
+
+			@Override
+			public Key next() {
+				return keys.next();
+			}
+
+			@Override
+			public Class<?> getResultClass() {
+				return Key.class;
+			}
+
+			@Override
+			public Cursor getCursorAfter() {
+				return null;
+			}
+		};
+	};
+
+	@Test
+	public void testGetPage() throws Exception {
+		// Setup
+		PageTotals pageTotals = new PageTotals(Runnable::run);
+
+		// Exercise
+		Page<Integer> page = pageTotals.getPage(PageRequest.of(0, 2),
+				() -> new SliceImpl<>(Arrays.asList(1, 2), PageRequest.of(0, 2), true),
+				this.countQuery, this.runner);
+
+		// Verify
+		assertEquals(Arrays.asList(1, 2), page.getContent());
+		assertEquals(7, page.getTotalElements());
+		assertEquals(4, page.getTotalPages());
+	}
+
+	@Test
+	public void testGetPageCached() throws Exception {
+		// Setup
+		PageTotals pageTotals = new PageTotals(Runnable::run);
+		pageTotals.getPage(PageRequest.of(0, 2),
+				() -> new SliceImpl<>(Arrays.asList(1, 2), PageRequest.of(0, 2), true),
+				this.countQuery, this.runner);
+
+		// Exercise
+		Page<Integer> page = pageTotals.getPage(PageRequest.of(1, 2),
+				() -> new SliceImpl<>(Arrays.asList(3, 4), PageRequest.of(1, 2), true),
+				this.countQuery, this.runner);
+
+		// Verify
+		assertEquals(7, page.getTotalElements());
+		assertEquals(1, this.countQueries.get());
+	}
+
+	@Test
+	public void testGetPageCleared() throws Exception {
+		// Setup
+		PageTotals pageTotals = new PageTotals(Runnable::run);
+		pageTotals.getPage(PageRequest.of(0, 2),
+				() -> new SliceImpl<>(Arrays.asList(1, 2), PageRequest.of(0, 2), true),
+				this.countQuery, this.runner);
+
+		// Exercise
+		pageTotals.clear();
+		pageTotals.getPage(PageRequest.of(0, 2),
+				() -> new SliceImpl<>(Arrays.asList(1, 2), PageRequest.of(0, 2), true),
+				this.countQuery, this.runner);
+
+		// Verify
+		assertEquals(2, this.countQueries.get());
+	}
+
+	@Test
+	public void testGetLastPage() throws Exception {
+		// Setup
+		PageTotals pageTotals = new PageTotals(command -> {
+		});
+
+		// Exercise
+		Page<Integer> page = pageTotals.getPage(PageRequest.of(3, 2),
+				() -> new SliceImpl<>(Arrays.asList(7), PageRequest.of(3, 2), false),
+				this.countQuery, this.runner);
+
+		// Verify
+		assertEquals(7, page.getTotalElements());
+		assertEquals(0, this.countQueries.get());
+	}
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.data.gclouddatastore.repository;
+
+import com.google.cloud.datastore.Cursor;
+import com.google.cloud.datastore.Key;
+import com.google.cloud.datastore.Query;
+import com.google.cloud.datastore.StructuredQuery;
+import com.google.datastore.v1.PropertyFilter;
+import com.google.datastore.v1.PropertyOrder;
+import com.google.protobuf.ByteString;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ProtoDatastoreTests {
+
+	@Test
+	public void testToQuery() {
+		// Setup
+		byte[] cursor = { 1, 2, (byte) 0xfb, (byte) 0xff };
+		Query<?> query = Query.newProjectionEntityQueryBuilder()
+				.setKind("Person")
+				.setProjection("firstName", "lastName")
+				.setDistinctOn("lastName")
+				.setOrderBy(StructuredQuery.OrderBy.asc("lastName"), StructuredQuery.OrderBy.desc("firstName"))
+				.setStartCursor(Cursor.copyFrom(cursor))
+				.setOffset(10)
+				.setLimit(20)
+				.build();
+
+		// Exercise
+		com.google.datastore.v1.Query protoQuery = ProtoDatastore.toQuery(query);
+
+		// Verify
+		Assert.assertEquals("Person", protoQuery.getKind(0).getName());
+		Assert.assertEquals("firstName", protoQuery.getProjection(0).getProperty().getName());
+		Assert.assertEquals("lastName", protoQuery.getProjection(1).getProperty().getName());
+		Assert.assertEquals("lastName", protoQuery.getDistinctOn(0).getName());
+		Assert.assertEquals("lastName", protoQuery.getOrder(0).getProperty().getName());
+		Assert.assertEquals(PropertyOrder.Direction.ASCENDING, protoQuery.getOrder(0).getDirection());
+		Assert.assertEquals(PropertyOrder.Direction.DESCENDING, protoQuery.getOrder(1).getDirection());
+		Assert.assertEquals(ByteString.copyFrom(cursor), protoQuery.getStartCursor());
+		Assert.assertTrue(protoQuery.getEndCursor().isEmpty());
+		Assert.assertEquals(10, protoQuery.getOffset());
+		Assert.assertEquals(20, protoQuery.getLimit().getValue());
+		Assert.assertFalse(protoQuery.hasFilter());
+	}
+
+	@Test
+	public void testToQuery_Filtered() {
+		// Setup
+		Query<?> query = Query.newEntityQueryBuilder()
+				.setKind("Person")
+				.setFilter(StructuredQuery.PropertyFilter.eq("citizen", true))
+				.build();
+
+		// Exercise
+		com.google.datastore.v1.Query protoQuery = ProtoDatastore.toQuery(query);
+
+		// Verify
+		Assert.assertNull(protoQuery);
+	}
+
+	@Test
+	public void testToQuery_Ancestor() {
+		// Setup
+		Key ancestor = Key.newBuilder("project", "Family", "smith").build();
+
+		// Exercise
+		com.google.datastore.v1.Query protoQuery = ProtoDatastore.toQuery("Person", ancestor);
+
+		// Verify
+		PropertyFilter filter = protoQuery.getFilter().getPropertyFilter();
+		Assert.assertEquals("Person", protoQuery.getKind(0).getName());
+		Assert.assertEquals("__key__", filter.getProperty().getName());
+		Assert.assertEquals(PropertyFilter.Operator.HAS_ANCESTOR, filter.getOp());
+		Assert.assertEquals(ProtoEntityCodec.toKey(ancestor), filter.getValue().getKeyValue());
+		Assert.assertFalse(protoQuery.hasLimit());
+	}
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.data.gclouddatastore.repository;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import com.google.cloud.datastore.FullEntity;
+import com.google.cloud.datastore.IncompleteKey;
+import com.google.cloud.datastore.Key;
+import com.google.common.base.Strings;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.springframework.data.annotation.Id;
+
+public class ProtoEntityCodecTests {
+
+	@Data
+	@NoArgsConstructor
+	public static class TestBean {
+		@Id
+		long id;
+		String string;
+		String longString;
+		int primitiveInt;
+		Double boxedDouble;
+		boolean primitiveBoolean;
+		byte[] bytes;
+		Instant instant;
+		List<Object> list;
+		Map<String, Object> map;
+		@Unindexed
+		String unindexed;
+		@Compressed(threshold = 0)
+		String compressed;
+	}
+
+	@Test
+	public void testToEntity() {
+		// Setup
+		TestBean bean = new TestBean();
+		bean.id = 1;
+		bean.string = "string";
+		bean.longString = Strings.repeat("a", 1501);
+		bean.primitiveInt = 2;
+		bean.primitiveBoolean = true;
+		bean.bytes = new byte[] { 1, 2, 3 };
+		bean.instant = Instant.parse("2017-07-09T12:34:56.123456Z");
+		bean.list = Arrays.asList(1L, "two", null);
+		bean.map = Collections.singletonMap("key", "value");
+		bean.unindexed = "unindexed";
+		bean.compressed = Strings.repeat("compressed", 100);
+		Key key = Key.newBuilder("project", "kind", 1).setNamespace("namespace").build();
+
+		// Exercise
+		com.google.datastore.v1.Entity entity = ProtoEntityCodec.toEntity(bean, key);
+
+		// Verify
+		FullEntity<? extends IncompleteKey> expected = Marshaller.toEntity(bean, key);
+		Assert.assertEquals(key, ProtoEntityCodec.toKey(entity.getKey()));
+		Assert.assertEquals(expected.getNames(), entity.getPropertiesMap().keySet());
+		for (String name : expected.getNames()) {
+			Assert.assertEquals(name, ProtoEntityCodec.toValue(expected.getValue(name)),
+					entity.getPropertiesOrThrow(name));
+		}
+	}
+
+	@Test
+	public void testToObject() {
+		// Setup
+		TestBean bean = new TestBean();
+		bean.id = 1;
+		bean.string = "string";
+		bean.primitiveInt = 2;
+		bean.boxedDouble = 3.5;
+		bean.bytes = new byte[] { 1, 2, 3 };
+		bean.instant = Instant.parse("2017-07-09T12:34:56.123456Z");
+		bean.list = Arrays.asList(1L, "two", null);
+		bean.map = Collections.singletonMap("key", "value");
+		bean.compressed = Strings.repeat("compressed", 100);
+		com.google.datastore.v1.Entity entity = ProtoEntityCodec.toEntity(bean,
+				Key.newBuilder("project", "kind", 1).build());
+
+		// Exercise
+		TestBean unmarshalled = ProtoEntityCodec.toObject(entity, TestBean.class);
+
+		// Verify
+		Assert.assertEquals(bean, unmarshalled);
+	}
+}
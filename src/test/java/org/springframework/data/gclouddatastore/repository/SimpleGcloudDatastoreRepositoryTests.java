@@ -20,18 +20,24 @@ import java.util.Arrays;
 import java.util.Iterator;
 import java.util.stream.Collectors;
 
+import com.google.cloud.datastore.DatastoreOptions;
 import com.google.cloud.datastore.PathElement;
+import lombok.Data;
+import lombok.NoArgsConstructor;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.annotation.Id;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.gclouddatasource.testing.Person;
 import org.springframework.data.gclouddatasource.testing.PersonRepository;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.emptyIterable;
@@ -45,6 +51,29 @@ public class SimpleGcloudDatastoreRepositoryTests {
 	@Autowired
     PersonRepository repo;
 
+	@Autowired
+	DatastoreTransactionManager transactionManager;
+
+	@Autowired
+	DatastoreOptions datastoreOptions;
+
+	@Data
+	@NoArgsConstructor
+	public static class Measurements {
+		@Id
+		long id;
+		@Unindexed
+		double[] values;
+	}
+
+	@Data
+	@NoArgsConstructor
+	@MaintainedCount
+	public static class Counted {
+		@Id
+		long id;
+	}
+
 	@Test
 	public void testCount1() throws Exception {
 		try (Context ctx = Context.with(PathElement.of("Kind", 1))) {
@@ -210,6 +239,7 @@ public class SimpleGcloudDatastoreRepositoryTests {
             // Exercise, Verify
             Page<Person> results = this.repo.findAll(PageRequest.of(0, 2));
             assertEquals(results.getNumberOfElements(), 2);
+            assertEquals(results.getTotalElements(), 4);
             Iterator<Person> pageResults = results.iterator();
             assertEquals(pageResults.next(), new Person(1L, "", "Fela", "Kuti", 0, false));
             assertEquals(pageResults.next(), new Person(2L, "", "Tony", "Allen", 0, false));
@@ -241,6 +271,147 @@ public class SimpleGcloudDatastoreRepositoryTests {
 		}
 	}
 
+	@Test
+	public void testFindAllIds3() throws Exception {
+		try (Context ctx = Context.with(PathElement.of("Kind", 1))) {
+			// Setup
+			this.repo.deleteAll();
+			this.repo.saveAll(Arrays.asList(new Person(123), new Person(456)));
+
+			// Exercise, Verify
+			assertThat(this.repo.findAllById(Arrays.asList(456L, 789L, 123L, 456L)),
+					contains(new Person(456), new Person(123)));
+		}
+	}
+
+	@Test
+	public void testKeysOnlyQueries() throws Exception {
+		try (Context ctx = Context.with(PathElement.of("Kind", 1))) {
+			// Setup
+			this.repo.deleteAll();
+			this.repo.saveAll(Arrays.asList(
+					new Person(123, "john@example.com", "John", "Doe", 1980, true),
+					new Person(456, "jane@example.com", "Jane", "Doe", 1982, true),
+					new Person(789, "john@example.org", "John", "Roe", 1990, false)));
+
+			// Exercise, Verify
+			assertEquals(true, this.repo.existsById(123L));
+			assertEquals(false, this.repo.existsById(321L));
+			assertEquals(true, this.repo.existsByEmailAddress("jane@example.com"));
+			assertEquals(2L, this.repo.countByLastName("Doe"));
+			assertThat(this.repo.findIdsByFirstName("John"), contains(123L, 789L));
+			assertEquals(2L, this.repo.deleteByLastName("Doe"));
+			assertThat(this.repo.findAll(), contains(new Person(789, "john@example.org", "John", "Roe", 1990, false)));
+		}
+	}
+
+	@Test
+	public void testFindSlice() throws Exception {
+		try (Context ctx = Context.with(PathElement.of("Kind", 1))) {
+			// Setup
+			this.repo.deleteAll();
+			this.repo.saveAll(Arrays.asList(new Person(123), new Person(456), new Person(789)));
+
+			// Exercise
+			Slice<Person> first = this.repo.findSlice(CursorPageable.of(2));
+			Slice<Person> second = this.repo.findSlice(first.nextPageable());
+
+			// Verify
+			assertThat(first, contains(new Person(123), new Person(456)));
+			assertEquals(true, first.hasNext());
+			assertThat(second, contains(new Person(789)));
+			assertEquals(false, second.hasNext());
+		}
+	}
+
+	@Test
+	public void testSliceQuery() throws Exception {
+		try (Context ctx = Context.with(PathElement.of("Kind", 1))) {
+			// Setup
+			this.repo.deleteAll();
+			this.repo.saveAll(Arrays.asList(
+					new Person(123, "john@example.com", "John", "Doe", 1980, true),
+					new Person(456, "jane@example.com", "Jane", "Doe", 1982, true),
+					new Person(789, "john@example.org", "John", "Roe", 1990, false)));
+
+			// Exercise
+			Slice<Person> first = this.repo.findByFirstName("John", CursorPageable.of(1));
+			String token = ((CursorPageable) first.nextPageable()).getContinuationToken();
+			Slice<Person> second = this.repo.findByFirstName("John",
+					CursorPageable.of(1, 1, Sort.unsorted(), token));
+
+			// Verify
+			assertEquals(Arrays.asList(123L), first.map(Person::getId).getContent());
+			assertEquals(Arrays.asList(789L), second.map(Person::getId).getContent());
+			assertEquals(false, second.hasNext());
+		}
+	}
+
+	@Test
+	public void testTransactionCommit_MaintainedCount() throws Exception {
+		try (Context ctx = Context.with(PathElement.of("Kind", 1))) {
+			// Setup
+			SimpleGcloudDatastoreRepository<Counted, Long> countedRepo = new SimpleGcloudDatastoreRepository<>(
+					new GcloudDatastoreEntityInformation<>(Counted.class), this.datastoreOptions);
+			countedRepo.deleteAll();
+			assertEquals(0L, countedRepo.count());
+
+			// Exercise
+			new TransactionTemplate(this.transactionManager).execute(status -> {
+				Counted counted = new Counted();
+				counted.id = 1;
+				countedRepo.save(counted);
+				// Queries run outside of the transaction, before its commit.
+				assertEquals(0L, countedRepo.count());
+				return null;
+			});
+
+			// Verify
+			assertEquals(1L, countedRepo.count());
+		}
+	}
+
+	@Test
+	public void testTransactionCommit() throws Exception {
+		try (Context ctx = Context.with(PathElement.of("Kind", 1))) {
+			// Setup
+			this.repo.deleteAll();
+			this.repo.save(new Person(123));
+
+			// Exercise
+			new TransactionTemplate(this.transactionManager).execute(status -> {
+				this.repo.save(new Person(456));
+				this.repo.deleteById(123L);
+				// Mutations are only sent on commit.
+				assertEquals(true, this.repo.findById(123L).isPresent());
+				return null;
+			});
+
+			// Verify
+			assertThat(this.repo.findAll(), contains(new Person(456)));
+		}
+	}
+
+	@Test
+	public void testTransactionRollback() throws Exception {
+		try (Context ctx = Context.with(PathElement.of("Kind", 1))) {
+			// Setup
+			this.repo.deleteAll();
+			this.repo.save(new Person(123));
+
+			// Exercise
+			new TransactionTemplate(this.transactionManager).execute(status -> {
+				this.repo.save(new Person(456));
+				this.repo.deleteById(123L);
+				status.setRollbackOnly();
+				return null;
+			});
+
+			// Verify
+			assertThat(this.repo.findAll(), contains(new Person(123)));
+		}
+	}
+
 	@Test
 	public void testFindOne1() throws Exception {
 		try (Context ctx = Context.with(PathElement.of("Kind", 1))) {
@@ -318,6 +489,25 @@ public class SimpleGcloudDatastoreRepositoryTests {
 		}
 	}
 
+	@Test
+	public void testSaveLargeEntity() throws Exception {
+		try (Context ctx = Context.with(PathElement.of("Kind", 1))) {
+			// Setup
+			SimpleGcloudDatastoreRepository<Measurements, Long> measurementsRepo = new SimpleGcloudDatastoreRepository<>(
+					new GcloudDatastoreEntityInformation<>(Measurements.class), this.datastoreOptions);
+			Measurements measurements = new Measurements();
+			measurements.id = 1;
+			measurements.values = new double[30000];
+			Arrays.fill(measurements.values, 1.5);
+
+			// Exercise
+			measurementsRepo.save(measurements);
+
+			// Verify
+			assertEquals(measurements, measurementsRepo.findById(1L).get());
+		}
+	}
+
 	@Test
 	public void testQueryMethod_CollectionQuery() throws Exception {
 		try (Context ctx = Context.with(PathElement.of("Kind", 1))) {
@@ -23,23 +23,33 @@ import java.time.LocalDateTime;
 import java.time.OffsetDateTime;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Collections;
+import java.util.Currency;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import com.google.cloud.Timestamp;
 import com.google.cloud.datastore.Blob;
 import com.google.cloud.datastore.DoubleValue;
 import com.google.cloud.datastore.Entity;
+import com.google.cloud.datastore.FullEntity;
 import com.google.cloud.datastore.Key;
 import com.google.cloud.datastore.LongValue;
 import com.google.cloud.datastore.StringValue;
+import com.google.cloud.datastore.ValueType;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import lombok.Value;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -93,6 +103,64 @@ public class UnmarshallerTests {
         Object object;
     }
 
+	@Data
+	@NoArgsConstructor
+	public static class TestConverterBean {
+		@Id
+		long id;
+		Currency currency;
+	}
+
+	@Data
+	@NoArgsConstructor
+	public static class TestTypedCollectionBean {
+		@Id
+		long id;
+		List<Integer> ints;
+		List<String> strings;
+		Map<String, Integer> counts;
+	}
+
+	@Value
+	public static class TestImmutableBean {
+		@Id
+		long id;
+		String string;
+		int primitiveInt;
+		Instant instant;
+	}
+
+	@Value
+	public static class TestImmutableEmbeddedBean {
+		@Id
+		long id;
+		@Embedded(storage = Embedded.Storage.BLOB)
+		Map<String, Object> map;
+		@Compressed(threshold = 0)
+		String text;
+	}
+
+	@Data
+	@NoArgsConstructor
+	@LazyLoading
+	public static class TestLazyBean {
+		@Id
+		long id;
+		Map<String, Object> map;
+		List<Object> list;
+		List<String> strings;
+	}
+
+	@Data
+	@NoArgsConstructor
+	@Interned
+	public static class TestInternedBean {
+		@Id
+		long id;
+		String status;
+		String country;
+	}
+
     @Test
     public void testUnmarshalToNull() {
         // Setup
@@ -364,4 +432,170 @@ public class UnmarshallerTests {
 		Assert.assertEquals(ZonedDateTime.parse("2017-07-09T12:34:56Z"),
 				bean.zonedDateTime);
 	}
+
+	@Test
+	public void testUnmarshalToObject_CustomConverter() {
+		// Setup
+		ValueConverters.register(ValueType.STRING, Currency.class,
+				value -> Currency.getInstance((String) value.get()));
+		Key key = Key.newBuilder("project", "kind", 1).build();
+		Entity entity = Entity.newBuilder(key).set("currency", "JPY").build();
+		TestConverterBean bean = new TestConverterBean();
+
+		// Exercise
+		Unmarshaller.unmarshalToObject(entity, bean);
+
+		// Verify
+		Assert.assertEquals(Currency.getInstance("JPY"), bean.currency);
+	}
+
+	@Test
+	public void testUnmarshal_TypedCollections() {
+		// Setup
+		Key key = Key.newBuilder("project", "kind", 1).build();
+		Entity entity = Entity.newBuilder(key)
+				.set("ints", LongValue.of(1), LongValue.of(2))
+				.set("strings", StringValue.of("a"), StringValue.of("b"))
+				.set("counts", FullEntity.newBuilder().set("a", 3).build())
+				.build();
+
+		// Exercise
+		TestTypedCollectionBean bean = Unmarshaller.unmarshal(entity, TestTypedCollectionBean.class);
+
+		// Verify
+		Assert.assertEquals(Arrays.asList(1, 2), bean.ints);
+		Assert.assertEquals(Arrays.asList("a", "b"), bean.strings);
+		Assert.assertEquals(Collections.singletonMap("a", 3), bean.counts);
+	}
+
+	@Test
+	public void testUnmarshal_Immutable() {
+		// Setup
+		Key key = Key.newBuilder("project", "kind", 1).build();
+		Entity entity = Entity.newBuilder(key).set("id", 1).set("string", "hello")
+				.set("primitiveInt", 42)
+				.set("instant", Timestamp.parseTimestamp("2017-07-09T12:34:56Z")).build();
+
+		// Exercise
+		TestImmutableBean bean = Unmarshaller.unmarshal(entity, TestImmutableBean.class);
+
+		// Verify
+		Assert.assertEquals(new TestImmutableBean(1, "hello", 42,
+				OffsetDateTime.parse("2017-07-09T12:34:56Z").toInstant()), bean);
+	}
+
+	@Test
+	public void testUnmarshal_ImmutableEmbeddedBlob() {
+		// Setup
+		Map<String, Object> map = new HashMap<>();
+		map.put("string", "hello");
+		map.put("long", 1L);
+		TestImmutableEmbeddedBean expected = new TestImmutableEmbeddedBean(1, map,
+				String.join("", Collections.nCopies(100, "compressed text ")));
+		FullEntity<?> entity = Marshaller.toEntity(expected, Key.newBuilder("project", "kind", 1).build());
+
+		// Exercise
+		TestImmutableEmbeddedBean bean = Unmarshaller.unmarshal(entity, TestImmutableEmbeddedBean.class);
+
+		// Verify
+		Assert.assertEquals(ValueType.BLOB, entity.getValue("map").getType());
+		Assert.assertEquals(ValueType.BLOB, entity.getValue("text").getType());
+		Assert.assertEquals(expected, bean);
+	}
+
+	@Test
+	public void testUnmarshal_Lazy() {
+		// Setup
+		Key key = Key.newBuilder("project", "kind", 1).build();
+		Entity entity = Entity.newBuilder(key)
+				.set("map", FullEntity.newBuilder().set("string", "hello")
+						.set("inner", FullEntity.newBuilder().set("long", 1).build()).build())
+				.set("list", LongValue.of(1), StringValue.of("two"))
+				.set("strings", StringValue.of("one"), StringValue.of("two"))
+				.build();
+
+		// Exercise
+		TestLazyBean bean = Unmarshaller.unmarshal(entity, TestLazyBean.class);
+
+		// Verify
+		Assert.assertThat(bean.map, instanceOf(LazyEntityMap.class));
+		Assert.assertThat(bean.list, instanceOf(LazyValueList.class));
+		Assert.assertThat(bean.strings, instanceOf(LazyValueList.class));
+		Assert.assertFalse(((LazyEntityMap) bean.map).isLoaded());
+		Assert.assertFalse(((LazyValueList) bean.list).isLoaded());
+		Assert.assertFalse(((LazyValueList) (Object) bean.strings).isLoaded());
+		Assert.assertEquals(Arrays.asList("one", "two"), bean.strings);
+		Assert.assertEquals(2, bean.map.size());
+		Assert.assertEquals("hello", bean.map.get("string"));
+		Assert.assertThat(bean.map.get("inner"), instanceOf(LazyEntityMap.class));
+		Assert.assertEquals(Collections.singletonMap("long", 1L), bean.map.get("inner"));
+		Assert.assertEquals(Arrays.asList(1L, "two"), bean.list);
+	}
+
+	@Test
+	public void testUnmarshal_LazyConcurrently() throws Exception {
+		// Setup
+		// Large values widen the window in which the lazy values are materialized.
+		FullEntity.Builder<?> map = FullEntity.newBuilder();
+		List<com.google.cloud.datastore.Value<?>> list = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			map.set("p" + i, i);
+			list.add(StringValue.of("v" + i));
+		}
+		Key key = Key.newBuilder("project", "kind", 1).build();
+		Entity entity = Entity.newBuilder(key)
+				.set("map", map.build())
+				.set("list", list)
+				.build();
+		int threads = 8;
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+		try {
+			for (int i = 0; i < 100; i++) {
+				TestLazyBean bean = Unmarshaller.unmarshal(entity, TestLazyBean.class);
+				CyclicBarrier barrier = new CyclicBarrier(threads);
+				List<Future<Object>> results = new ArrayList<>();
+
+				// Exercise
+				for (int j = 0; j < threads; j++) {
+					boolean sizeFirst = j % 2 == 0;
+					results.add(executor.submit(() -> {
+						barrier.await();
+						if (sizeFirst) {
+							Assert.assertEquals(1000, bean.map.size());
+							Assert.assertEquals(1000, bean.list.size());
+						}
+						return Arrays.asList(bean.map.get("p999"), bean.list.get(999));
+					}));
+				}
+
+				// Verify
+				for (Future<Object> result : results) {
+					Assert.assertEquals(Arrays.asList(999L, "v999"), result.get());
+				}
+			}
+		}
+		finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testUnmarshal_Interned() {
+		// Setup
+		Key key = Key.newBuilder("project", "kind", 1).build();
+		Entity entity1 = Entity.newBuilder(key)
+				.set("status", new String("active")).set("country", new String("JP")).build();
+		Entity entity2 = Entity.newBuilder(key)
+				.set("status", new String("active")).set("country", new String("JP")).build();
+
+		// Exercise
+		TestInternedBean bean1 = Unmarshaller.unmarshal(entity1, TestInternedBean.class);
+		TestInternedBean bean2 = Unmarshaller.unmarshal(entity2, TestInternedBean.class);
+
+		// Verify
+		Assert.assertEquals("active", bean2.status);
+		Assert.assertSame(bean1.status, bean2.status);
+		Assert.assertSame(bean1.country, bean2.country);
+	}
 }
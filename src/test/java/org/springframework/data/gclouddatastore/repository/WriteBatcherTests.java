@@ -0,0 +1,236 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.data.gclouddatastore.repository;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import com.google.cloud.Timestamp;
+import com.google.cloud.datastore.Blob;
+import com.google.cloud.datastore.DatastoreException;
+import com.google.cloud.datastore.DoubleValue;
+import com.google.cloud.datastore.FullEntity;
+import com.google.cloud.datastore.Key;
+import com.google.cloud.datastore.LatLng;
+import com.google.cloud.datastore.StringValue;
+import com.google.rpc.Code;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class WriteBatcherTests {
+
+	private static List<Integer> batch(int size) {
+		return IntStream.range(0, size).boxed().collect(Collectors.toList());
+	}
+
+	@Test
+	public void testIsFull() throws Exception {
+		// Setup
+		WriteBatcher batcher = new WriteBatcher();
+
+		// Exercise, Verify
+		assertFalse(batcher.isFull(10, 1000, 500));
+		assertTrue(batcher.isFull(10, 1000, 10));
+		assertTrue(batcher.isFull(batcher.getLimit(), 1000, 500));
+		assertTrue(batcher.isFull(1, WriteBatcher.MAX_REQUEST_BYTES, 500));
+		assertTrue(batcher.fits(0, WriteBatcher.MAX_ENTITY_BYTES));
+		assertFalse(batcher.fits(WriteBatcher.MAX_REQUEST_BYTES - 10, 11));
+	}
+
+	@Test
+	public void testEstimateSize() throws Exception {
+		// Setup
+		FullEntity<Key> entity = FullEntity.newBuilder(Key.newBuilder("project", "Person", "john").build())
+				.set("name", "John")
+				.set("age", 42)
+				.set("score", 1.5)
+				.set("citizen", true)
+				.set("born", Timestamp.now())
+				.set("home", LatLng.of(35.6, 139.7))
+				.set("photo", Blob.copyFrom(new byte[100000]))
+				.set("tags", StringValue.of("a"), StringValue.of("b"))
+				.set("address", FullEntity.newBuilder().set("city", "Tokyo").build())
+				.set("friend", Key.newBuilder("project", "Person", 2).build())
+				.setNull("nickname")
+				.build();
+		int encoded = ProtoEntityCodec.toEntity(entity).getSerializedSize();
+
+		// Exercise
+		int estimated = WriteBatcher.estimateSize(entity);
+
+		// Verify
+		assertTrue(estimated >= encoded);
+		assertTrue(estimated < encoded + 1000);
+	}
+
+	@Test
+	public void testExceedsEntityLimit() throws Exception {
+		// Setup
+		List<DoubleValue> values = Collections.nCopies(30000, DoubleValue.of(1.5));
+		FullEntity<Key> small = FullEntity.newBuilder(Key.newBuilder("project", "Kind", 1).build())
+				.set("values", new ArrayList<>(values))
+				.build();
+		FullEntity<Key> large = FullEntity.newBuilder(Key.newBuilder("project", "Kind", 2).build())
+				.set("blob", Blob.copyFrom(new byte[(int) WriteBatcher.MAX_ENTITY_BYTES]))
+				.build();
+
+		// Exercise, Verify
+		assertTrue(WriteBatcher.estimateSize(small) > WriteBatcher.MAX_ENTITY_BYTES);
+		assertFalse(WriteBatcher.exceedsEntityLimit(small, WriteBatcher.estimateSize(small),
+				WriteBatcher::encodedSize));
+		assertTrue(WriteBatcher.exceedsEntityLimit(large, WriteBatcher.estimateSize(large),
+				WriteBatcher::encodedSize));
+	}
+
+	@Test
+	public void testSendGrows() throws Exception {
+		// Setup
+		WriteBatcher batcher = new WriteBatcher();
+		int limit = batcher.getLimit();
+
+		// Exercise
+		batcher.send(batch(limit), b -> {
+		});
+
+		// Verify
+		assertTrue(batcher.getLimit() > limit);
+	}
+
+	@Test
+	public void testSendSplits() throws Exception {
+		// Setup
+		WriteBatcher batcher = new WriteBatcher();
+		List<List<Integer>> sent = new ArrayList<>();
+
+		// Exercise
+		batcher.send(batch(8), b -> {
+			if (b.size() > 2) {
+				throw new DatastoreException(Code.DEADLINE_EXCEEDED_VALUE, "Deadline exceeded", "DEADLINE_EXCEEDED");
+			}
+			sent.add(b);
+		});
+
+		// Verify
+		assertEquals(4, sent.size());
+		assertEquals(batch(8), sent.stream().flatMap(List::stream).collect(Collectors.toList()));
+		assertTrue(batcher.getLimit() < 8);
+	}
+
+	@Test(expected = DatastoreException.class)
+	public void testSendFails() throws Exception {
+		// Setup
+		WriteBatcher batcher = new WriteBatcher();
+
+		// Exercise
+		batcher.send(Collections.singletonList(1), b -> {
+			throw new DatastoreException(Code.DEADLINE_EXCEEDED_VALUE, "Deadline exceeded", "DEADLINE_EXCEEDED");
+		});
+	}
+
+	@Test
+	public void testSendSplitsOnDeadlineCode() throws Exception {
+		// Setup
+		WriteBatcher batcher = new WriteBatcher();
+		List<List<Integer>> sent = new ArrayList<>();
+
+		// Exercise
+		batcher.send(batch(4), b -> {
+			if (b.size() > 2) {
+				throw new DatastoreException(Code.DEADLINE_EXCEEDED_VALUE, "Deadline exceeded", null);
+			}
+			sent.add(b);
+		});
+
+		// Verify
+		assertEquals(2, sent.size());
+	}
+
+	@Test
+	public void testSendSplitsOnRequestTooLarge() throws Exception {
+		// Setup
+		WriteBatcher batcher = new WriteBatcher();
+		int limit = batcher.getLimit();
+		List<List<Integer>> sent = new ArrayList<>();
+
+		// Exercise
+		batcher.send(batch(4), b -> {
+			if (b.size() > 2) {
+				throw new DatastoreException(Code.INVALID_ARGUMENT_VALUE, "Request payload size exceeds the limit",
+						"INVALID_ARGUMENT");
+			}
+			sent.add(b);
+		});
+
+		// Verify
+		assertEquals(2, sent.size());
+		assertEquals(limit, batcher.getLimit());
+	}
+
+	@Test
+	public void testSendInvalidMutation() throws Exception {
+		// Setup
+		WriteBatcher batcher = new WriteBatcher();
+		int limit = batcher.getLimit();
+		List<List<Integer>> sent = new ArrayList<>();
+
+		// Exercise
+		try {
+			batcher.send(batch(8), b -> {
+				if (b.contains(5)) {
+					throw new DatastoreException(Code.INVALID_ARGUMENT_VALUE, "The key path element must not be empty",
+							"INVALID_ARGUMENT");
+				}
+				sent.add(b);
+			});
+			fail("Expected DatastoreException");
+		}
+		catch (DatastoreException e) {
+			// Verify
+			assertTrue(sent.isEmpty());
+			assertEquals(limit, batcher.getLimit());
+		}
+	}
+
+	@Test(expected = DatastoreException.class)
+	public void testSendMessageOnly() throws Exception {
+		// Setup
+		WriteBatcher batcher = new WriteBatcher();
+
+		// Exercise
+		batcher.send(batch(8), b -> {
+			throw new DatastoreException(Code.UNAVAILABLE_VALUE, "Deadline exceeded, request too large", "UNAVAILABLE");
+		});
+	}
+
+	@Test(expected = DatastoreException.class)
+	public void testSendOtherError() throws Exception {
+		// Setup
+		WriteBatcher batcher = new WriteBatcher();
+
+		// Exercise
+		batcher.send(batch(8), b -> {
+			throw new DatastoreException(Code.PERMISSION_DENIED_VALUE, "Permission denied", "PERMISSION_DENIED");
+		});
+	}
+}
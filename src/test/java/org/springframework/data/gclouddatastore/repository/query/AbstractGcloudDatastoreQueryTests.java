@@ -0,0 +1,71 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.data.gclouddatastore.repository.query;
+
+import com.google.cloud.datastore.DatastoreOptions;
+import com.google.cloud.datastore.Query;
+import com.google.cloud.datastore.StructuredQuery;
+import org.junit.Test;
+
+import org.springframework.data.gclouddatasource.testing.PersonRepository;
+import org.springframework.data.projection.SpelAwareProxyProjectionFactory;
+import org.springframework.data.repository.core.support.DefaultRepositoryMetadata;
+
+import static org.junit.Assert.assertEquals;
+
+public class AbstractGcloudDatastoreQueryTests {
+
+	private CollectionQuery createQuery(String methodName) throws Exception {
+		return new CollectionQuery(
+				new GcloudDatastoreQueryMethod(
+						PersonRepository.class.getMethod(methodName, boolean.class),
+						new DefaultRepositoryMetadata(PersonRepository.class),
+						new SpelAwareProxyProjectionFactory()),
+				DatastoreOptions.getDefaultInstance());
+	}
+
+	@Test
+	public void testProjectionFallsBackToEntityQuery() throws Exception {
+		// Setup
+		CollectionQuery query = createQuery("findNamesByCitizen");
+
+		// Exercise
+		StructuredQuery<?> datastoreQuery = query.createQueryBuilder(new Object[] { true }).build();
+
+		// Verify
+		assertEquals(Query.newEntityQueryBuilder()
+				.setKind("Person")
+				.setFilter(StructuredQuery.PropertyFilter.eq("citizen", true))
+				.build(), datastoreQuery);
+	}
+
+	@Test
+	public void testProjectionQuery() throws Exception {
+		// Setup
+		CollectionQuery query = createQuery("findProjectedNamesByCitizen");
+
+		// Exercise
+		StructuredQuery<?> datastoreQuery = query.createQueryBuilder(new Object[] { true }).build();
+
+		// Verify
+		assertEquals(Query.newProjectionEntityQueryBuilder()
+				.setKind("Person")
+				.setFilter(StructuredQuery.PropertyFilter.eq("citizen", true))
+				.setProjection("firstName", "lastName")
+				.build(), datastoreQuery);
+	}
+}
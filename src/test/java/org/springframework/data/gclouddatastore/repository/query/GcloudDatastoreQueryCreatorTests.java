@@ -17,9 +17,12 @@
 package org.springframework.data.gclouddatastore.repository.query;
 
 import java.lang.reflect.Method;
+import java.util.Arrays;
 
 import com.google.cloud.datastore.DatastoreOptions;
 import com.google.cloud.datastore.Entity;
+import com.google.cloud.datastore.KeyQuery;
+import com.google.cloud.datastore.ProjectionEntity;
 import com.google.cloud.datastore.Query;
 import com.google.cloud.datastore.StructuredQuery;
 import org.junit.Test;
@@ -32,13 +35,19 @@ import org.springframework.data.repository.query.QueryMethod;
 import org.springframework.data.repository.query.parser.PartTree;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 public class GcloudDatastoreQueryCreatorTests {
 
-	private GcloudDatastoreQueryCreator createCreator(Class<?> repositoryClass, Method method, Object... values) {
-		QueryMethod queryMethod = new QueryMethod(method,
+	private QueryMethod createQueryMethod(Class<?> repositoryClass, Method method) {
+		return new QueryMethod(method,
 				new DefaultRepositoryMetadata(repositoryClass),
 				new SpelAwareProxyProjectionFactory());
+	}
+
+	private GcloudDatastoreQueryCreator createCreator(Class<?> repositoryClass, Method method, Object... values) {
+		QueryMethod queryMethod = createQueryMethod(repositoryClass, method);
 		return new GcloudDatastoreQueryCreator(
 				new PartTree(method.getName(),
 						queryMethod.getResultProcessor().getReturnedType()
@@ -84,4 +93,52 @@ public class GcloudDatastoreQueryCreatorTests {
 						.build(),
 				queryBuilder.build());
 	}
+
+	@Test
+	public void testDistinctProjection() throws Exception {
+		// Setup
+		GcloudDatastoreQueryCreator creator = createCreator(PersonRepository.class,
+				PersonRepository.class.getMethod("findByFirstName", String.class),
+				"John");
+
+		// Exercise
+		StructuredQuery.Builder<ProjectionEntity> queryBuilder = creator
+				.createProjectionQuery(Arrays.asList("lastName", "emailAddress"), true);
+
+		// Verify
+		assertEquals(Query.newProjectionEntityQueryBuilder()
+				.setFilter(StructuredQuery.PropertyFilter.eq("firstName", "John"))
+				.setProjection("lastName", "emailAddress")
+				.setDistinctOn("lastName", "emailAddress")
+				.build(), queryBuilder.build());
+	}
+
+	@Test
+	public void testKeyQuery() throws Exception {
+		// Setup
+		GcloudDatastoreQueryCreator creator = createCreator(PersonRepository.class,
+				PersonRepository.class.getMethod("findByLastNameOrderByFirstNameAsc", String.class),
+				"Doe");
+
+		// Exercise
+		KeyQuery.Builder queryBuilder = creator.createKeyQuery();
+
+		// Verify
+		assertEquals(Query.newKeyQueryBuilder()
+				.setFilter(StructuredQuery.PropertyFilter.eq("lastName", "Doe"))
+				.addOrderBy(StructuredQuery.OrderBy.asc("firstName"))
+				.build(), queryBuilder.build());
+	}
+
+	@Test
+	public void testKeysOnlyQueryMethods() throws Exception {
+		// Exercise & Verify
+		for (String name : Arrays.asList("existsByEmailAddress", "countByLastName",
+				"deleteByLastName", "findIdsByFirstName")) {
+			assertTrue(name, KeysOnlyQuery.isKeysOnly(createQueryMethod(PersonRepository.class,
+					PersonRepository.class.getMethod(name, String.class)), Long.class));
+		}
+		assertFalse(KeysOnlyQuery.isKeysOnly(createQueryMethod(PersonRepository.class,
+				PersonRepository.class.getMethod("findByFirstName", String.class)), Long.class));
+	}
 }